@@ -0,0 +1,59 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import ru.kata.spring.boot_security.demo.service.VirtualThreads;
+
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncConfig.class);
+
+    public static final String BACKGROUND_EXECUTOR = "backgroundTaskExecutor";
+    public static final String PASSWORD_UPGRADE_EXECUTOR = "passwordUpgradeExecutor";
+
+    @Bean(name = BACKGROUND_EXECUTOR)
+    public AsyncTaskExecutor backgroundTaskExecutor(@Value("${app.async.background.pool-size:2}") int poolSize,
+                                                    @Value("${app.async.background.queue-capacity:16}") int queueCapacity,
+                                                    @Value("${app.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads && VirtualThreads.isSupported()) {
+            // a virtual thread per task, the concurrency limit takes the place of the pool size
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(VirtualThreads.threadFactory("background-"));
+            executor.setConcurrencyLimit(poolSize);
+            logger.info("Background tasks run on virtual threads, at most {} at a time", poolSize);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("background-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+
+    // Stores rehashed passwords after login. These are short JDBC writes, so they get their own
+    // small pool rather than a hashing thread or the common fork-join pool that bulk imports
+    // saturate. An upgrade dropped on overflow is simply retried at the user's next login.
+    @Bean(name = PASSWORD_UPGRADE_EXECUTOR)
+    public AsyncTaskExecutor passwordUpgradeExecutor(@Value("${app.async.password-upgrade.pool-size:1}") int poolSize,
+                                                     @Value("${app.async.password-upgrade.queue-capacity:256}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("password-upgrade-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.setRejectedExecutionHandler((task, pool) ->
+                logger.debug("Password upgrade queue is full, upgrade postponed to next login"));
+        return executor;
+    }
+}
@@ -0,0 +1,77 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Times every public DAO method as app.dao{class, method, exception}.
+ * Timers are looked up once per method and exception type and reused afterwards.
+ */
+@Aspect
+@Component
+public class DaoMetricsAspect {
+
+    static final String METRIC = "app.dao";
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<Method, MethodTimers> timers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public DaoMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * ru.kata.spring.boot_security.demo.dao.*DaoImpl.*(..))")
+    public Object time(ProceedingJoinPoint pjp) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Class<?> exception = null;
+        try {
+            return pjp.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass();
+            throw e;
+        } finally {
+            Method method = ((MethodSignature) pjp.getSignature()).getMethod();
+            sample.stop(timers.computeIfAbsent(method, MethodTimers::new).get(exception));
+        }
+    }
+
+    private final class MethodTimers {
+        private final String className;
+        private final String methodName;
+        private final Timer success;
+        private final ConcurrentMap<Class<?>, Timer> failures = new ConcurrentHashMap<>();
+
+        private MethodTimers(Method method) {
+            this.className = method.getDeclaringClass().getSimpleName();
+            this.methodName = method.getName();
+            this.success = build("none");
+        }
+
+        private Timer get(Class<?> exception) {
+            if (exception == null) {
+                return success;
+            }
+            return failures.computeIfAbsent(exception, type -> build(type.getSimpleName()));
+        }
+
+        private Timer build(String exception) {
+            return Timer.builder(METRIC)
+                    .description("UserDao/RoleDao call latency")
+                    .tag("class", className)
+                    .tag("method", methodName)
+                    .tag("exception", exception)
+                    .register(meterRegistry);
+        }
+    }
+}
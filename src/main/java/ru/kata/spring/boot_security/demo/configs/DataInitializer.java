@@ -6,65 +6,97 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import ru.kata.spring.boot_security.demo.dao.MigrationCheckpointDao;
 import ru.kata.spring.boot_security.demo.dao.RoleDao;
 import ru.kata.spring.boot_security.demo.dao.UserDao;
+import ru.kata.spring.boot_security.demo.model.MigrationCheckpoint;
 import ru.kata.spring.boot_security.demo.model.Role;
 import ru.kata.spring.boot_security.demo.model.User;
 import ru.kata.spring.boot_security.demo.service.PasswordService;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 @Component
 public class DataInitializer implements CommandLineRunner {
 
+    static final String SEED_MARKER = "seed-users";
+
     private static final Logger logger = LoggerFactory.getLogger(DataInitializer.class);
 
     private final UserDao userDao;
     private final RoleDao roleDao;
+    private final MigrationCheckpointDao checkpointDao;
     private final PasswordService passwordService;
 
     @Autowired
     public DataInitializer(UserDao userDao,
                            RoleDao roleDao,
+                           MigrationCheckpointDao checkpointDao,
                            PasswordService passwordService) {
         this.userDao = userDao;
         this.roleDao = roleDao;
+        this.checkpointDao = checkpointDao;
         this.passwordService = passwordService;
     }
 
     @Override
     @Transactional
     public void run(String... args) {
+        MigrationCheckpoint marker = checkpointDao.findOrCreate(SEED_MARKER);
+        if (marker.isCompleted()) {
+            logger.debug("Seed users already created, skipping data initialization");
+            return;
+        }
         logger.info("Starting data initialization...");
-        Role adminRole = createRoleIfNotExists("ROLE_ADMIN");
-        Role userRole = createRoleIfNotExists("ROLE_USER");
+        // roles are seeded by the V2 migration
+        Role adminRole = roleDao.findByName("ROLE_ADMIN");
+        Role userRole = roleDao.findByName("ROLE_USER");
+
+        List<SeedUser> seeds = List.of(
+                new SeedUser("Admin User", 30, "admin@admin.com", "admin", Set.of(adminRole)),
+                new SeedUser("Regular User", 25, "user@user.com", "user", Set.of(userRole)),
+                new SeedUser("Test User", 28, "test@test.com", "test", Set.of(userRole)));
 
-        createUserIfNotExists("Admin User", 30, "admin@admin.com", "admin", Set.of(adminRole));
-        createUserIfNotExists("Regular User", 25, "user@user.com", "user", Set.of(userRole));
-        createUserIfNotExists("Test User", 28, "test@test.com", "test", Set.of(userRole));
+        Set<String> existing = userDao.findExistingEmails(
+                seeds.stream().map(s -> s.email).collect(Collectors.toList()));
+        List<SeedUser> missing = seeds.stream()
+                .filter(s -> !existing.contains(s.email))
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            List<String> hashes = passwordService.encodeAll(
+                    missing.stream().map(s -> s.password).collect(Collectors.toList()));
+            List<User> users = new ArrayList<>(missing.size());
+            for (int i = 0; i < missing.size(); i++) {
+                SeedUser seed = missing.get(i);
+                User user = new User(seed.name, seed.age, seed.email, hashes.get(i));
+                user.setRoles(seed.roles);
+                users.add(user);
+                logger.info("Created user: {} <{}>", seed.name, seed.email);
+            }
+            userDao.saveAll(users, users.size());
+        }
 
+        marker.setCompleted(true);
+        checkpointDao.save(marker);
         logger.info("Data initialization completed successfully");
     }
 
-    private Role createRoleIfNotExists(String roleName) {
-        try {
-            Role r = roleDao.findByName(roleName);
-            if (r != null) return r;
-        } catch (Exception ignored) {
-        }
-        Role role = new Role(roleName);
-        roleDao.save(role);
-        return role;
-    }
+    private static final class SeedUser {
+        private final String name;
+        private final int age;
+        private final String email;
+        private final String password;
+        private final Set<Role> roles;
 
-    private void createUserIfNotExists(String name, int age, String email, String pwd, Set<Role> roles) {
-        if (!userDao.existsByEmail(email)) {
-            String hash = passwordService.getDefaultPasswordHash(pwd);
-            if (hash == null) hash = passwordService.encodePassword(pwd);
-            User u = new User(name, age, email, hash);
-            u.setRoles(roles);
-            userDao.save(u);
-            logger.info("Created user: {} <{}>", name, email);
+        private SeedUser(String name, int age, String email, String password, Set<Role> roles) {
+            this.name = name;
+            this.age = age;
+            this.email = email;
+            this.password = password;
+            this.roles = roles;
         }
     }
 }
@@ -0,0 +1,99 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+
+import java.util.Map;
+
+/**
+ * Wraps the configured session store and times every operation as app.session.operations,
+ * tagged with the operation and the store.
+ * <p>
+ * Use {@link #wrap} to create one: a store that can look sessions up by principal name is
+ * wrapped in a subclass that is itself a {@link FindByIndexNameSessionRepository}, so features
+ * that need the index (concurrent session control, "log out everywhere") keep working.
+ */
+public class InstrumentedSessionRepository<S extends Session> implements SessionRepository<S> {
+
+    private final SessionRepository<S> delegate;
+    private final String store;
+    private final Timer createTimer;
+    private final Timer findTimer;
+    private final Timer saveTimer;
+    private final Timer deleteTimer;
+
+    InstrumentedSessionRepository(SessionRepository<S> delegate, String store, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.store = store;
+        this.createTimer = timer(registry, "create");
+        this.findTimer = timer(registry, "find");
+        this.saveTimer = timer(registry, "save");
+        this.deleteTimer = timer(registry, "delete");
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <S extends Session> InstrumentedSessionRepository<S> wrap(SessionRepository<S> delegate,
+                                                                            String store,
+                                                                            MeterRegistry registry) {
+        if (delegate instanceof FindByIndexNameSessionRepository) {
+            return new Indexed<>((FindByIndexNameSessionRepository<S>) delegate, store, registry);
+        }
+        return new InstrumentedSessionRepository<>(delegate, store, registry);
+    }
+
+    @Override
+    public S createSession() {
+        return createTimer.record(delegate::createSession);
+    }
+
+    @Override
+    public void save(S session) {
+        saveTimer.record(() -> delegate.save(session));
+    }
+
+    @Override
+    public S findById(String id) {
+        return findTimer.record(() -> delegate.findById(id));
+    }
+
+    @Override
+    public void deleteById(String id) {
+        deleteTimer.record(() -> delegate.deleteById(id));
+    }
+
+    public SessionRepository<S> getDelegate() {
+        return delegate;
+    }
+
+    public String getStore() {
+        return store;
+    }
+
+    Timer timer(MeterRegistry registry, String operation) {
+        return Timer.builder("app.session.operations")
+                .tag("operation", operation)
+                .tag("store", store)
+                .register(registry);
+    }
+
+    static final class Indexed<S extends Session> extends InstrumentedSessionRepository<S>
+            implements FindByIndexNameSessionRepository<S> {
+
+        private final FindByIndexNameSessionRepository<S> indexed;
+        private final Timer findByIndexTimer;
+
+        private Indexed(FindByIndexNameSessionRepository<S> delegate, String store, MeterRegistry registry) {
+            super(delegate, store, registry);
+            this.indexed = delegate;
+            this.findByIndexTimer = timer(registry, "find-by-index");
+        }
+
+        @Override
+        public Map<String, S> findByIndexNameAndIndexValue(String indexName, String indexValue) {
+            return findByIndexTimer.record(() -> indexed.findByIndexNameAndIndexValue(indexName, indexValue));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+import org.springframework.stereotype.Component;
+import ru.kata.spring.boot_security.demo.service.LoginAttemptLimiter;
+import ru.kata.spring.boot_security.demo.service.PasswordHashingBusyException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+@Component
+public class LoginFailureHandler extends SimpleUrlAuthenticationFailureHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginFailureHandler.class);
+
+    private final LoginAttemptLimiter loginAttemptLimiter;
+
+    @Autowired
+    public LoginFailureHandler(LoginAttemptLimiter loginAttemptLimiter) {
+        super("/login?error=true");
+        this.loginAttemptLimiter = loginAttemptLimiter;
+    }
+
+    @Override
+    public void onAuthenticationFailure(HttpServletRequest req,
+                                        HttpServletResponse resp,
+                                        AuthenticationException e) throws IOException, ServletException {
+        if (e instanceof PasswordHashingBusyException) {
+            logger.warn("Login rejected, password hashing is saturated");
+            // the password was never checked, so the attempt does not count
+            loginAttemptLimiter.release(req.getParameter("email"), req.getRemoteAddr());
+            resp.setHeader("Retry-After", "1");
+            resp.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), e.getMessage());
+            return;
+        }
+        loginAttemptLimiter.recordFailure(req.getParameter("email"), req.getRemoteAddr());
+        super.onAuthenticationFailure(req, resp, e);
+    }
+}
@@ -0,0 +1,52 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.kata.spring.boot_security.demo.service.LoginAttemptLimiter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Rejects login attempts over the failure limit with 429 before the authentication filter
+ * looks up the user or runs the password encoder. Accepted attempts hold a limiter slot that
+ * the success and failure handlers settle.
+ * <p>
+ * Addresses are keyed on {@code getRemoteAddr()}, which is the client's address only with
+ * server.forward-headers-strategy set and the proxy in front listed as trusted; otherwise every
+ * client behind the proxy shares one address window.
+ */
+public class LoginThrottleFilter extends OncePerRequestFilter {
+
+    private final LoginAttemptLimiter limiter;
+    private final RequestMatcher loginRequest;
+    private final String usernameParameter;
+
+    public LoginThrottleFilter(LoginAttemptLimiter limiter, String loginUrl, String usernameParameter) {
+        this.limiter = limiter;
+        this.loginRequest = new AntPathRequestMatcher(loginUrl, "POST");
+        this.usernameParameter = usernameParameter;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !limiter.isEnabled() || !loginRequest.matches(request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        if (!limiter.tryAcquire(request.getParameter(usernameParameter), request.getRemoteAddr())) {
+            response.setHeader("Retry-After", String.valueOf(limiter.getWindow().getSeconds()));
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Too many failed login attempts, retry later");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,85 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.kata.spring.boot_security.demo.service.LoginAttemptLimiter;
+import ru.kata.spring.boot_security.demo.service.UserDetailsCache;
+import ru.kata.spring.boot_security.demo.service.UserImportService;
+
+/**
+ * Application meters, published through /actuator/metrics and /actuator/prometheus. Hibernate and
+ * second-level cache statistics come from hibernate-micrometer, startup steps from /actuator/startup.
+ */
+@Configuration
+public class MetricsConfig {
+
+    private static final String[] MIGRATION_STATES = {"idle", "running", "completed", "stopped", "failed"};
+
+    // enables @Timed on arbitrary beans, not just controllers
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+
+    // bound once all singletons exist: a MeterBinder would be applied while the registry itself
+    // is being created and PasswordService already needs the registry
+    @Bean
+    public SmartInitializingSingleton applicationMetrics(MeterRegistry registry,
+                                                         UserDetailsCache userDetailsCache,
+                                                         LoginAttemptLimiter loginAttemptLimiter,
+                                                         UserImportService userImportService,
+                                                         PasswordMigrator passwordMigrator) {
+        return () -> {
+            Gauge.builder("app.user.cache.size", userDetailsCache, UserDetailsCache::size)
+                    .register(registry);
+            Gauge.builder("app.user.cache.max-size", userDetailsCache, UserDetailsCache::getMaxSize)
+                    .register(registry);
+            FunctionCounter.builder("app.user.cache.requests", userDetailsCache, UserDetailsCache::getHits)
+                    .tag("result", "hit").register(registry);
+            FunctionCounter.builder("app.user.cache.requests", userDetailsCache, UserDetailsCache::getMisses)
+                    .tag("result", "miss").register(registry);
+            FunctionCounter.builder("app.user.cache.evictions", userDetailsCache, UserDetailsCache::getEvictions)
+                    .register(registry);
+
+            FunctionCounter.builder("app.login.failures", loginAttemptLimiter, LoginAttemptLimiter::getFailuresRecorded)
+                    .register(registry);
+            FunctionCounter.builder("app.login.rejected", loginAttemptLimiter, LoginAttemptLimiter::getRejectedByEmail)
+                    .tag("key", "email").register(registry);
+            FunctionCounter.builder("app.login.rejected", loginAttemptLimiter, LoginAttemptLimiter::getRejectedByAddress)
+                    .tag("key", "address").register(registry);
+            FunctionCounter.builder("app.login.evicted", loginAttemptLimiter, LoginAttemptLimiter::getEvicted)
+                    .register(registry);
+            Gauge.builder("app.login.tracked", loginAttemptLimiter, LoginAttemptLimiter::getTrackedEmails)
+                    .tag("key", "email").register(registry);
+            Gauge.builder("app.login.tracked", loginAttemptLimiter, LoginAttemptLimiter::getTrackedAddresses)
+                    .tag("key", "address").register(registry);
+
+            Gauge.builder("app.import.processed", userImportService, UserImportService::getProgressProcessed)
+                    .register(registry);
+            Gauge.builder("app.import.total", userImportService, UserImportService::getProgressTotal)
+                    .register(registry);
+
+            FunctionCounter.builder("app.password.migration.encoded", passwordMigrator, PasswordMigrator::getMigrated)
+                    .register(registry);
+            FunctionCounter.builder("app.password.migration.scanned", passwordMigrator, PasswordMigrator::getScanned)
+                    .register(registry);
+            FunctionCounter.builder("app.password.migration.skipped", passwordMigrator, PasswordMigrator::getSkipped)
+                    .register(registry);
+            Gauge.builder("app.password.migration.last-id", passwordMigrator, PasswordMigrator::getLastId)
+                    .register(registry);
+            Gauge.builder("app.password.migration.elapsed", passwordMigrator, PasswordMigrator::getElapsedMillis)
+                    .baseUnit("milliseconds").register(registry);
+            // one gauge per state, 1 for the current one
+            for (String state : MIGRATION_STATES) {
+                Gauge.builder("app.password.migration.state", passwordMigrator,
+                                migrator -> state.equals(migrator.getState()) ? 1 : 0)
+                        .tag("state", state).register(registry);
+            }
+        };
+    }
+}
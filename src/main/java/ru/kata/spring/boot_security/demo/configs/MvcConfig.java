@@ -1,17 +1,36 @@
 package ru.kata.spring.boot_security.demo.configs;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.format.FormatterRegistry;
 import org.springframework.web.filter.HiddenHttpMethodFilter;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.service.RoleService;
 
 @Configuration
 public class MvcConfig implements WebMvcConfigurer {
+
+    private final RoleService roleService;
+
+    @Autowired
+    public MvcConfig(@Lazy RoleService roleService) {
+        this.roleService = roleService;
+    }
+
     public void addViewControllers(ViewControllerRegistry registry) {
         registry.addViewController("/user").setViewName("user/user");
     }
 
+    // Role checkboxes post role ids; resolve them from the role registry without a query.
+    @Override
+    public void addFormatters(FormatterRegistry registry) {
+        registry.addConverter(String.class, Role.class, id -> roleService.getRoleById(Long.valueOf(id.trim())));
+    }
+
     @Bean
     public HiddenHttpMethodFilter hiddenHttpMethodFilter() {
         return new HiddenHttpMethodFilter();
@@ -1,37 +1,168 @@
 package ru.kata.spring.boot_security.demo.configs;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.CommandLineRunner;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.demo.dao.MigrationCheckpointDao;
 import ru.kata.spring.boot_security.demo.dao.UserDao;
-import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.dto.StoredPassword;
+import ru.kata.spring.boot_security.demo.model.MigrationCheckpoint;
 import ru.kata.spring.boot_security.demo.service.PasswordService;
+import ru.kata.spring.boot_security.demo.service.UserService;
 
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
+/**
+ * One-time migration that encodes plain-text passwords left over from before hashing was introduced.
+ * Runs in the background once the application is ready: users are read in id-ordered chunks, hashed
+ * in parallel outside any transaction and written back together with the checkpoint, so an interrupted
+ * run resumes after the last stored id and a completed one is skipped without touching the users table.
+ */
 @Component
-public class PasswordMigrator implements CommandLineRunner {
+public class PasswordMigrator {
+
+    static final String MIGRATION_NAME = "password-encoding";
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordMigrator.class);
 
     private final UserDao userDao;
+    private final UserService userService;
+    private final MigrationCheckpointDao checkpointDao;
     private final PasswordService passwordService;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final int batchSize;
+
+    private volatile String state = "idle";
+    private volatile boolean stopping;
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong migrated = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong lastId = new AtomicLong();
+    private final AtomicLong elapsedMillis = new AtomicLong();
 
     @Autowired
-    public PasswordMigrator(UserDao userDao, PasswordService passwordService) {
+    public PasswordMigrator(UserDao userDao,
+                            UserService userService,
+                            MigrationCheckpointDao checkpointDao,
+                            PasswordService passwordService,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${app.migration.password.batch-size:500}") int batchSize) {
         this.userDao = userDao;
+        this.userService = userService;
+        this.checkpointDao = checkpointDao;
         this.passwordService = passwordService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.batchSize = batchSize;
     }
 
-    @Override
-    @Transactional
-    public void run(String... args) {
-        List<User> users = userDao.findAll();
-        for (User u : users) {
-            if (!passwordService.isPasswordEncoded(u.getPassword())) {
-                u.setPassword(passwordService.encodePassword(u.getPassword()));
-                userDao.update(u);
-                System.out.println("Password migrated for " + u.getEmail());
+    @Async(AsyncConfig.BACKGROUND_EXECUTOR)
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        MigrationCheckpoint start = transactionTemplate.execute(status -> checkpointDao.findOrCreate(MIGRATION_NAME));
+        lastId.set(start.getLastId());
+        if (start.isCompleted()) {
+            state = "completed";
+            logger.debug("Password migration already completed, skipping");
+            return;
+        }
+        logger.info("Password migration starting after user id {}", start.getLastId());
+        state = "running";
+        long begin = System.nanoTime();
+        try {
+            boolean done = false;
+            while (!done && !stopping) {
+                done = migrateChunk();
+                elapsedMillis.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
             }
+            state = done ? "completed" : "stopped";
+            logger.info("Password migration {}: {} users scanned, {} encoded, {} changed concurrently, in {} ms",
+                    state, scanned.get(), migrated.get(), skipped.get(), elapsedMillis.get());
+        } catch (RuntimeException e) {
+            state = "failed";
+            logger.error("Password migration failed after user id {}, will resume on next start", lastId.get(), e);
         }
     }
+
+    @PreDestroy
+    public void stop() {
+        stopping = true;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public long getScanned() {
+        return scanned.get();
+    }
+
+    public long getMigrated() {
+        return migrated.get();
+    }
+
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    public long getLastId() {
+        return lastId.get();
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis.get();
+    }
+
+    private boolean migrateChunk() {
+        List<StoredPassword> chunk = readOnlyTransactionTemplate.execute(
+                status -> userDao.findPasswordsAfterId(lastId.get(), batchSize));
+        List<StoredPassword> plain = chunk.stream()
+                .filter(u -> !passwordService.isPasswordEncoded(u.getPassword()))
+                .collect(Collectors.toList());
+        // hashing is the slow part, keep it outside the write transaction
+        List<String> hashes = plain.isEmpty()
+                ? new ArrayList<>()
+                : passwordService.encodeAll(plain.stream().map(StoredPassword::getPassword).collect(Collectors.toList()));
+
+        boolean completed = chunk.size() < batchSize;
+        long chunkLastId = chunk.isEmpty() ? lastId.get() : chunk.get(chunk.size() - 1).getId();
+        int updated = transactionTemplate.execute(status -> {
+            int count = 0;
+            for (int i = 0; i < plain.size(); i++) {
+                StoredPassword stored = plain.get(i);
+                // compare-and-set: a password changed since the read is already encoded
+                if (userService.upgradePassword(stored.getId(), stored.getPassword(), hashes.get(i))) {
+                    count++;
+                }
+            }
+            MigrationCheckpoint checkpoint = checkpointDao.findOrCreate(MIGRATION_NAME);
+            checkpoint.setLastId(chunkLastId);
+            checkpoint.setProcessed(checkpoint.getProcessed() + chunk.size());
+            checkpoint.setCompleted(completed);
+            checkpointDao.save(checkpoint);
+            return count;
+        });
+
+        scanned.addAndGet(chunk.size());
+        migrated.addAndGet(updated);
+        skipped.addAndGet(plain.size() - updated);
+        lastId.set(chunkLastId);
+        logger.debug("Password migration chunk: {} users scanned, {} encoded, last id {}",
+                chunk.size(), updated, chunkLastId);
+        return completed;
+    }
 }
@@ -0,0 +1,79 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.PasswordHashingBusyException;
+import ru.kata.spring.boot_security.demo.service.PasswordService;
+import ru.kata.spring.boot_security.demo.service.UserPrincipal;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Form-login provider that upgrades weak or outdated password hashes after a successful login.
+ * The new hash is computed on the password hashing pool and stored on the upgrade executor,
+ * both off the request thread.
+ * The resulting authentication carries a slim {@link UserPrincipal} rather than the entity.
+ */
+public class RehashingAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(RehashingAuthenticationProvider.class);
+
+    private final PasswordService passwordService;
+    private final UserService userService;
+    private final Executor upgradeExecutor;
+
+    public RehashingAuthenticationProvider(UserDetailsService userDetailsService,
+                                           PasswordService passwordService,
+                                           UserService userService,
+                                           Executor upgradeExecutor) {
+        this.passwordService = passwordService;
+        this.userService = userService;
+        this.upgradeExecutor = upgradeExecutor;
+        setUserDetailsService(userDetailsService);
+        setPasswordEncoder(passwordService.getPasswordEncoder());
+    }
+
+    @Override
+    protected Authentication createSuccessAuthentication(Object principal,
+                                                         Authentication authentication,
+                                                         UserDetails user) {
+        if (user instanceof User && authentication.getCredentials() != null
+                && passwordService.needsUpgrade(user.getPassword())) {
+            scheduleUpgrade((User) user, authentication.getCredentials().toString());
+        }
+        if (!(user instanceof User)) {
+            return super.createSuccessAuthentication(principal, authentication, user);
+        }
+        UserPrincipal slim = UserPrincipal.from((User) user);
+        UsernamePasswordAuthenticationToken result = new UsernamePasswordAuthenticationToken(
+                slim, authentication.getCredentials(), slim.getAuthorities());
+        result.setDetails(authentication.getDetails());
+        return result;
+    }
+
+    private void scheduleUpgrade(User user, String rawPassword) {
+        Long id = user.getId();
+        String currentPassword = user.getPassword();
+        try {
+            passwordService.encodePasswordAsync(rawPassword)
+                    .thenAcceptAsync(upgraded -> {
+                        if (userService.upgradePassword(id, currentPassword, upgraded)) {
+                            logger.info("Password hash of user {} upgraded to {}", id, passwordService.getEncoderId());
+                        }
+                    }, upgradeExecutor)
+                    .exceptionally(e -> {
+                        logger.warn("Password hash upgrade failed for user {}", id, e);
+                        return null;
+                    });
+        } catch (PasswordHashingBusyException e) {
+            logger.debug("Hashing pool busy, password upgrade for user {} postponed to next login", id);
+        }
+    }
+}
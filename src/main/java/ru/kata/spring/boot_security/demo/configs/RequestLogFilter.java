@@ -0,0 +1,60 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Logs one line per request for a random sample of requests and for every request slower
+ * than the threshold, instead of logging each call in the service and DAO layers.
+ */
+@Component
+public class RequestLogFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestLogFilter.class);
+
+    private final double sampleRate;
+    private final long slowThresholdNanos;
+
+    @Autowired
+    public RequestLogFilter(@Value("${app.logging.request.sample-rate:0}") double sampleRate,
+                            @Value("${app.logging.request.slow-threshold:1s}") Duration slowThreshold) {
+        this.sampleRate = Math.max(0, Math.min(sampleRate, 1));
+        this.slowThresholdNanos = slowThreshold.isZero() ? Long.MAX_VALUE : slowThreshold.toNanos();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !logger.isWarnEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            if (elapsed >= slowThresholdNanos) {
+                logger.warn("Slow request {} {} -> {} in {} ms", request.getMethod(), request.getRequestURI(),
+                        response.getStatus(), elapsed / 1_000_000);
+            } else if (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+                logger.info("{} {} -> {} in {} ms", request.getMethod(), request.getRequestURI(),
+                        response.getStatus(), elapsed / 1_000_000);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.session.FlushMode;
+import org.springframework.session.MapSessionRepository;
+import org.springframework.session.SaveMode;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * HTTP sessions live outside the servlet container so any node can serve any logged-in user.
+ * app.session.store selects the store: jdbc (shared, PostgreSQL) or memory (single node, tests).
+ */
+@Configuration
+@EnableSpringHttpSession
+@EnableScheduling
+public class SessionConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionConfig.class);
+
+    private final ObjectProvider<InstrumentedSessionRepository<?>> sessionRepository;
+
+    @Autowired
+    public SessionConfig(ObjectProvider<InstrumentedSessionRepository<?>> sessionRepository) {
+        this.sessionRepository = sessionRepository;
+    }
+
+    @Bean
+    public InstrumentedSessionRepository<?> sessionRepository(@Value("${app.session.store:jdbc}") String store,
+                                                              @Value("${app.session.timeout:PT30M}") Duration timeout,
+                                                              JdbcTemplate jdbcTemplate,
+                                                              PlatformTransactionManager transactionManager,
+                                                              MeterRegistry meterRegistry) {
+        logger.info("HTTP session store: {}, timeout {}", store, timeout);
+        switch (store) {
+            case "jdbc":
+                JdbcIndexedSessionRepository jdbc = new JdbcIndexedSessionRepository(
+                        jdbcTemplate, new TransactionTemplate(transactionManager));
+                jdbc.setDefaultMaxInactiveInterval((int) timeout.getSeconds());
+                // write once per request and only the attributes that were set, in one batch
+                jdbc.setFlushMode(FlushMode.ON_SAVE);
+                jdbc.setSaveMode(SaveMode.ON_SET_ATTRIBUTE);
+                return InstrumentedSessionRepository.wrap(jdbc, store, meterRegistry);
+            case "memory":
+                MapSessionRepository memory = new MapSessionRepository(new ConcurrentHashMap<>());
+                memory.setDefaultMaxInactiveInterval((int) timeout.getSeconds());
+                return InstrumentedSessionRepository.wrap(memory, store, meterRegistry);
+            default:
+                throw new IllegalArgumentException("Unknown session store: " + store + ", expected jdbc or memory");
+        }
+    }
+
+    // Runs on every node that shares the store. The delete is idempotent, so overlapping runs only
+    // cost a redundant statement; larger clusters can set app.session.cleanup-cron=- on all nodes
+    // but one to switch the job off there.
+    @Scheduled(cron = "${app.session.cleanup-cron:0 * * * * *}")
+    public void cleanUpExpiredSessions() {
+        Object delegate = sessionRepository.getObject().getDelegate();
+        if (delegate instanceof JdbcIndexedSessionRepository) {
+            ((JdbcIndexedSessionRepository) delegate).cleanUpExpiredSessions();
+        }
+    }
+}
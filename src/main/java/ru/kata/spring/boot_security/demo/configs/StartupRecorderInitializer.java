@@ -0,0 +1,26 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.metrics.ApplicationStartup;
+
+/**
+ * Records bean creation and context phases into a {@link BufferingApplicationStartup} of
+ * {@code app.startup.recorder.capacity} steps (0 = off). Registered in META-INF/spring.factories so it
+ * applies to every launch, including tests and embedded use, not only {@code main()}.
+ * A recorder already set on the application is left alone.
+ */
+public class StartupRecorderInitializer implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+    static final String CAPACITY_PROPERTY = "app.startup.recorder.capacity";
+    static final int DEFAULT_CAPACITY = 4096;
+
+    @Override
+    public void initialize(ConfigurableApplicationContext context) {
+        int capacity = context.getEnvironment().getProperty(CAPACITY_PROPERTY, Integer.class, DEFAULT_CAPACITY);
+        if (capacity > 0 && context.getApplicationStartup() == ApplicationStartup.DEFAULT) {
+            context.setApplicationStartup(new BufferingApplicationStartup(capacity));
+        }
+    }
+}
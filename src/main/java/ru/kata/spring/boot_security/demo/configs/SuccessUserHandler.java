@@ -2,10 +2,16 @@ package ru.kata.spring.boot_security.demo.configs;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
 import org.springframework.stereotype.Component;
+import ru.kata.spring.boot_security.demo.service.LoginAttemptLimiter;
+import ru.kata.spring.boot_security.demo.service.TokenService;
+import ru.kata.spring.boot_security.demo.service.UserPrincipal;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -17,19 +23,33 @@ public class SuccessUserHandler implements AuthenticationSuccessHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(SuccessUserHandler.class);
 
+    private final TokenService tokenService;
+    private final LoginAttemptLimiter loginAttemptLimiter;
+
+    @Autowired
+    public SuccessUserHandler(TokenService tokenService, LoginAttemptLimiter loginAttemptLimiter) {
+        this.tokenService = tokenService;
+        this.loginAttemptLimiter = loginAttemptLimiter;
+    }
+
     @Override
     public void onAuthenticationSuccess(HttpServletRequest req,
                                         HttpServletResponse resp,
                                         Authentication auth) throws IOException {
         Set<String> roles = AuthorityUtils.authorityListToSet(auth.getAuthorities());
         logger.debug("Пользователь вошёл с ролями: {}", roles);
+        loginAttemptLimiter.recordSuccess(auth.getName(), req.getRemoteAddr());
+
+        if (tokenService.isEnabled() && auth.getPrincipal() instanceof UserPrincipal) {
+            issueTokenCookie(resp, (UserPrincipal) auth.getPrincipal(), roles);
+        }
 
         try {
             if (roles.contains("ROLE_ADMIN")) {
-                logger.info("Перенаправляем ADMIN на /admin");
+                logger.debug("Перенаправляем ADMIN на /admin");
                 resp.sendRedirect("/admin");
             } else if (roles.contains("ROLE_USER")) {
-                logger.info("Перенаправляем USER на /user");
+                logger.debug("Перенаправляем USER на /user");
                 resp.sendRedirect("/user");
             } else {
                 logger.warn("У пользователя нет ролей, направляем на главную");
@@ -40,4 +60,16 @@ public class SuccessUserHandler implements AuthenticationSuccessHandler {
             resp.sendRedirect("/");
         }
     }
+
+    private void issueTokenCookie(HttpServletResponse resp, UserPrincipal user, Set<String> roles) {
+        String token = tokenService.issue(user.getId(), user.getTokenEpoch(), user.getEmail(), roles);
+        ResponseCookie cookie = ResponseCookie.from(tokenService.getCookieName(), token)
+                .httpOnly(true)
+                .secure(tokenService.isCookieSecure())
+                .sameSite("Lax")
+                .path("/")
+                .maxAge(tokenService.getTtl())
+                .build();
+        resp.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
 }
\ No newline at end of file
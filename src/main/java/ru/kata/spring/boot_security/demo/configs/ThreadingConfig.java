@@ -0,0 +1,59 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.kata.spring.boot_security.demo.service.VirtualThreads;
+
+/**
+ * Opt-in virtual thread mode (app.threads.virtual.enabled=true): servlet requests run on a virtual thread
+ * each and the connection pool, not the Tomcat thread count, bounds concurrent database work.
+ * On a JDK without virtual threads the platform pools are kept and a warning is logged.
+ * The @Async executor and password hashing are switched in AsyncConfig and PasswordService.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.threads.virtual.enabled", havingValue = "true")
+public class ThreadingConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThreadingConfig.class);
+
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> virtualThreadRequests() {
+        return factory -> {
+            if (!VirtualThreads.isSupported()) {
+                logger.warn("app.threads.virtual.enabled is set but Java {} has no virtual threads, "
+                        + "keeping the Tomcat thread pool", Runtime.version().feature());
+                return;
+            }
+            factory.addProtocolHandlerCustomizers(handler ->
+                    handler.setExecutor(VirtualThreads.newThreadPerTaskExecutor("http-virtual-")));
+            logger.info("Servlet requests run on virtual threads");
+        };
+    }
+
+    // requests no longer queue for a Tomcat thread, so they queue for a connection instead
+    @Bean
+    public static BeanPostProcessor virtualThreadConnectionPool(
+            @Value("${app.threads.virtual.db-pool-size:0}") int poolSize) {
+        int size = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors() * 2 + 1;
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource && VirtualThreads.isSupported()) {
+                    HikariDataSource dataSource = (HikariDataSource) bean;
+                    dataSource.setMaximumPoolSize(size);
+                    dataSource.setMinimumIdle(size);
+                    logger.info("Connection pool sized to {} for virtual threads", size);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,78 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.AuthenticationEntryPoint;
+import org.springframework.security.web.authentication.www.BasicAuthenticationConverter;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+import ru.kata.spring.boot_security.demo.service.LoginAttemptLimiter;
+import ru.kata.spring.boot_security.demo.service.PasswordHashingBusyException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * HTTP Basic authentication that goes through the same {@link LoginAttemptLimiter} as the login form:
+ * every request carrying credentials is a password check, so it takes a limiter slot first and is
+ * answered with 429 once the email or address is over its limit.
+ */
+public class ThrottledBasicAuthenticationFilter extends BasicAuthenticationFilter {
+
+    private final LoginAttemptLimiter limiter;
+    private final BasicAuthenticationConverter converter = new BasicAuthenticationConverter();
+
+    public ThrottledBasicAuthenticationFilter(AuthenticationManager authenticationManager,
+                                              AuthenticationEntryPoint entryPoint,
+                                              LoginAttemptLimiter limiter) {
+        super(authenticationManager, entryPoint);
+        this.limiter = limiter;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws IOException, ServletException {
+        String username = username(request);
+        if (username != null && !limiter.tryAcquire(username, request.getRemoteAddr())) {
+            response.setHeader("Retry-After", String.valueOf(limiter.getWindow().getSeconds()));
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Too many failed login attempts, retry later");
+            return;
+        }
+        super.doFilterInternal(request, response, chain);
+    }
+
+    @Override
+    protected void onSuccessfulAuthentication(HttpServletRequest request,
+                                              HttpServletResponse response,
+                                              Authentication authResult) {
+        limiter.recordSuccess(authResult.getName(), request.getRemoteAddr());
+    }
+
+    @Override
+    protected void onUnsuccessfulAuthentication(HttpServletRequest request,
+                                                HttpServletResponse response,
+                                                AuthenticationException failed) {
+        if (failed instanceof PasswordHashingBusyException) {
+            // the password was never checked, so the attempt does not count
+            limiter.release(username(request), request.getRemoteAddr());
+        } else {
+            limiter.recordFailure(username(request), request.getRemoteAddr());
+        }
+    }
+
+    // null without a Basic header; a malformed one is left to the parent, which rejects it unhashed
+    private String username(HttpServletRequest request) {
+        try {
+            UsernamePasswordAuthenticationToken token = converter.convert(request);
+            return token == null ? null : token.getName();
+        } catch (AuthenticationException e) {
+            return null;
+        }
+    }
+}
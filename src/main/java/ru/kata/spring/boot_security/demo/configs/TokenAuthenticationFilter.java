@@ -0,0 +1,74 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+import ru.kata.spring.boot_security.demo.service.TokenPrincipal;
+import ru.kata.spring.boot_security.demo.service.TokenService;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Authenticates requests from the signed token in the auth cookie or a Bearer header.
+ * Verification is an HMAC over the token plus a comparison of its epoch with the user's current one,
+ * read through the second-level cache, so revoked tokens and deleted users are refused. No session is involved.
+ */
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenAuthenticationFilter.class);
+
+    private final TokenService tokenService;
+    private final UserService userService;
+
+    public TokenAuthenticationFilter(TokenService tokenService, UserService userService) {
+        this.tokenService = tokenService;
+        this.userService = userService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            tokenService.verify(resolveToken(request)).filter(this::isCurrent).ifPresent(principal -> {
+                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                        principal, null, AuthorityUtils.createAuthorityList(
+                        principal.getAuthorities().toArray(new String[0])));
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+            });
+        }
+        chain.doFilter(request, response);
+    }
+
+    private boolean isCurrent(TokenPrincipal principal) {
+        Optional<Long> epoch = userService.getTokenEpoch(principal.getId());
+        if (epoch.isEmpty() || epoch.get() != principal.getTokenEpoch()) {
+            logger.debug("Token of user {} has been revoked", principal.getId());
+            return false;
+        }
+        return true;
+    }
+
+    private String resolveToken(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith(BEARER_PREFIX)) {
+            return header.substring(BEARER_PREFIX.length());
+        }
+        Cookie cookie = WebUtils.getCookie(request, tokenService.getCookieName());
+        return cookie == null ? null : cookie.getValue();
+    }
+}
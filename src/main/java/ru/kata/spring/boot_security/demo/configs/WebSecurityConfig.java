@@ -1,14 +1,31 @@
 package ru.kata.spring.boot_security.demo.configs;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.authentication.logout.LogoutFilter;
+import org.springframework.security.web.authentication.www.BasicAuthenticationEntryPoint;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+import org.springframework.security.web.savedrequest.NullRequestCache;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import ru.kata.spring.boot_security.demo.service.LoginAttemptLimiter;
 import ru.kata.spring.boot_security.demo.service.PasswordService;
+import ru.kata.spring.boot_security.demo.service.TokenPrincipal;
+import ru.kata.spring.boot_security.demo.service.TokenService;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import java.util.concurrent.Executor;
 
 @Configuration
 @EnableWebSecurity
@@ -16,23 +33,41 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
     private final UserDetailsService userDetailsService;
     private final SuccessUserHandler successUserHandler;
+    private final LoginFailureHandler loginFailureHandler;
     private final PasswordService passwordService;
+    private final UserService userService;
+    private final TokenService tokenService;
+    private final LoginAttemptLimiter loginAttemptLimiter;
+    private final Executor passwordUpgradeExecutor;
 
     @Autowired
     public WebSecurityConfig(@Lazy UserDetailsService userDetailsService,
                              SuccessUserHandler successUserHandler,
-                             PasswordService passwordService) {
+                             LoginFailureHandler loginFailureHandler,
+                             PasswordService passwordService,
+                             @Lazy UserService userService,
+                             TokenService tokenService,
+                             LoginAttemptLimiter loginAttemptLimiter,
+                             @Qualifier(AsyncConfig.PASSWORD_UPGRADE_EXECUTOR) Executor passwordUpgradeExecutor) {
         this.userDetailsService = userDetailsService;
         this.successUserHandler = successUserHandler;
+        this.loginFailureHandler = loginFailureHandler;
         this.passwordService = passwordService;
+        this.userService = userService;
+        this.tokenService = tokenService;
+        this.loginAttemptLimiter = loginAttemptLimiter;
+        this.passwordUpgradeExecutor = passwordUpgradeExecutor;
     }
 
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         http
                 .authorizeRequests()
-                .antMatchers("/", "/login", "/register").permitAll()
+                .antMatchers("/", "/login", "/register", "/error").permitAll()
+                .antMatchers("/actuator/health/**", "/actuator/info").permitAll()
+                .antMatchers("/actuator/**").hasRole("ADMIN")
                 .antMatchers("/admin/**").hasRole("ADMIN")
+                .antMatchers("/api/**").hasRole("ADMIN")
                 .antMatchers("/user/**").hasAnyRole("USER", "ADMIN")
                 .anyRequest().authenticated()
                 .and()
@@ -40,16 +75,98 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
                 .loginPage("/login").usernameParameter("email")
                 .passwordParameter("password")
                 .successHandler(successUserHandler)
-                .failureUrl("/login?error=true").permitAll()
+                .failureHandler(loginFailureHandler).permitAll()
+                .and()
+                // API clients get a 401 instead of a redirect to the login page
+                .exceptionHandling()
+                .defaultAuthenticationEntryPointFor(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED),
+                        new AntPathRequestMatcher("/api/**"))
                 .and()
                 .logout().logoutUrl("/logout")
                 .logoutSuccessUrl("/").permitAll()
-                .and().csrf().disable();
+                .and().csrf().disable()
+                .addFilterBefore(new LoginThrottleFilter(loginAttemptLimiter, "/login", "email"),
+                        UsernamePasswordAuthenticationFilter.class);
+
+        if (tokenService.isEnabled()) {
+            // no HttpSession: every request is authenticated from the signed token cookie
+            http
+                    .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                    .and()
+                    .requestCache().requestCache(new NullRequestCache())
+                    .and()
+                    .logout().deleteCookies(tokenService.getCookieName())
+                    // logging out revokes every token of the user, not only the one in this cookie
+                    .addLogoutHandler((request, response, authentication) -> {
+                        if (authentication != null && authentication.getPrincipal() instanceof TokenPrincipal) {
+                            userService.revokeTokens(((TokenPrincipal) authentication.getPrincipal()).getId());
+                        }
+                    })
+                    .and()
+                    // ahead of the logout filter so logout sees who is logging out
+                    .addFilterBefore(new TokenAuthenticationFilter(tokenService, userService),
+                            LogoutFilter.class);
+        }
     }
 
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.userDetailsService(userDetailsService)
-                .passwordEncoder(passwordService.getPasswordEncoder());
+        auth.authenticationProvider(
+                new RehashingAuthenticationProvider(userDetailsService, passwordService, userService,
+                        passwordUpgradeExecutor));
+    }
+
+    /**
+     * Metrics scrapers authenticate with HTTP Basic, on /actuator/prometheus only. The chain is
+     * stateless, so scrapes do not create sessions, and Basic credentials are throttled like the
+     * login form. No other URL accepts Basic credentials.
+     */
+    @Configuration
+    @Order(1)
+    public static class ScraperSecurityConfig extends WebSecurityConfigurerAdapter {
+
+        private final UserDetailsService userDetailsService;
+        private final PasswordService passwordService;
+        private final UserService userService;
+        private final LoginAttemptLimiter loginAttemptLimiter;
+        private final Executor passwordUpgradeExecutor;
+
+        @Autowired
+        public ScraperSecurityConfig(@Lazy UserDetailsService userDetailsService,
+                                     PasswordService passwordService,
+                                     @Lazy UserService userService,
+                                     LoginAttemptLimiter loginAttemptLimiter,
+                                     @Qualifier(AsyncConfig.PASSWORD_UPGRADE_EXECUTOR) Executor passwordUpgradeExecutor) {
+            this.userDetailsService = userDetailsService;
+            this.passwordService = passwordService;
+            this.userService = userService;
+            this.loginAttemptLimiter = loginAttemptLimiter;
+            this.passwordUpgradeExecutor = passwordUpgradeExecutor;
+        }
+
+        @Override
+        protected void configure(HttpSecurity http) throws Exception {
+            BasicAuthenticationEntryPoint entryPoint = new BasicAuthenticationEntryPoint();
+            entryPoint.setRealmName("metrics");
+            entryPoint.afterPropertiesSet();
+            http
+                    .requestMatcher(new AntPathRequestMatcher("/actuator/prometheus"))
+                    .authorizeRequests().anyRequest().hasRole("ADMIN")
+                    .and()
+                    .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                    .and()
+                    .exceptionHandling().authenticationEntryPoint(entryPoint)
+                    .and()
+                    .csrf().disable()
+                    .addFilterAt(new ThrottledBasicAuthenticationFilter(authenticationManager(), entryPoint,
+                            loginAttemptLimiter), BasicAuthenticationFilter.class);
+        }
+
+        @Override
+        protected void configure(AuthenticationManagerBuilder auth) throws Exception {
+            auth.authenticationProvider(
+                    new RehashingAuthenticationProvider(userDetailsService, passwordService, userService,
+                            passwordUpgradeExecutor));
+        }
     }
 }
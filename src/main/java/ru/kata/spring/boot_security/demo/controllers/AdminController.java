@@ -1,40 +1,122 @@
 package ru.kata.spring.boot_security.demo.controllers;
 
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import ru.kata.spring.boot_security.demo.dao.UserSort;
+import ru.kata.spring.boot_security.demo.dto.ImportReport;
+import ru.kata.spring.boot_security.demo.dto.UserSummary;
 import ru.kata.spring.boot_security.demo.model.Role;
 import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.PasswordHashingBusyException;
 import ru.kata.spring.boot_security.demo.service.RoleService;
+import ru.kata.spring.boot_security.demo.service.UserExportService;
+import ru.kata.spring.boot_security.demo.service.UserImportService;
+import ru.kata.spring.boot_security.demo.service.UserPage;
 import ru.kata.spring.boot_security.demo.service.UserService;
 
-import java.util.List;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 @Controller
 @RequestMapping("/admin")
+@Timed(value = "app.admin.requests", histogram = true)
 public class AdminController {
 
     private final UserService userService;
     private final RoleService roleService;
+    private final UserExportService userExportService;
+    private final UserImportService userImportService;
+    private final int defaultPageSize;
+    private final int maxPageSize;
     private static final Logger logger = LoggerFactory.getLogger(AdminController.class);
 
     @Autowired
-    public AdminController(UserService userService, RoleService roleService) {
+    public AdminController(UserService userService, RoleService roleService,
+                           UserExportService userExportService,
+                           UserImportService userImportService,
+                           @Value("${app.admin.page-size:50}") int defaultPageSize,
+                           @Value("${app.admin.max-page-size:500}") int maxPageSize) {
         this.userService = userService;
         this.roleService = roleService;
+        this.userExportService = userExportService;
+        this.userImportService = userImportService;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
     }
 
     @GetMapping
-    public String listUsers(Model model) {
-        model.addAttribute("users", userService.getAllUsersWithRoles());
+    public String listUsers(@RequestParam(value = "after", required = false) String after,
+                            @RequestParam(value = "size", required = false) Integer size,
+                            @RequestParam(value = "sort", defaultValue = "id") String sort,
+                            @RequestParam(value = "dir", defaultValue = "asc") String dir,
+                            Model model) {
+        int pageSize = size == null || size < 1 ? defaultPageSize : Math.min(size, maxPageSize);
+        UserPage<UserSummary> page = userService.getUserSummaryPage(UserSort.fromParam(sort),
+                "desc".equalsIgnoreCase(dir), after, pageSize);
+        model.addAttribute("users", page.getContent());
+        model.addAttribute("page", page);
         return "admin/list";
     }
 
+    @GetMapping("/export.csv")
+    public void exportCsv(HttpServletResponse response) throws IOException {
+        response.setContentType("text/csv;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users.csv\"");
+        userExportService.writeCsv(exportWriter(response));
+    }
+
+    @GetMapping("/export.ndjson")
+    public void exportNdjson(HttpServletResponse response) throws IOException {
+        response.setContentType("application/x-ndjson;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users.ndjson\"");
+        userExportService.writeNdjson(exportWriter(response));
+    }
+
+    private static Writer exportWriter(HttpServletResponse response) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    @GetMapping("/import")
+    public String importForm() {
+        return "admin/import";
+    }
+
+    @PostMapping("/import")
+    public String importUsers(@RequestParam("file") MultipartFile file, Model model) {
+        if (file.isEmpty()) {
+            model.addAttribute("error", "Файл не выбран");
+            return "admin/import";
+        }
+        String filename = file.getOriginalFilename() == null ? "" : file.getOriginalFilename().toLowerCase();
+        try (InputStream in = file.getInputStream()) {
+            ImportReport report = filename.endsWith(".json")
+                    ? userImportService.importJson(in)
+                    : userImportService.importCsv(new InputStreamReader(in, StandardCharsets.UTF_8));
+            model.addAttribute("report", report);
+        } catch (Exception e) {
+            logger.error("Error importing users from {}", filename, e);
+            model.addAttribute("error", e.getMessage());
+        }
+        return "admin/import";
+    }
+
     @GetMapping("/new")
     public String newUserForm(Model model) {
         model.addAttribute("user", new User());
@@ -47,6 +129,8 @@ public class AdminController {
         try {
             userService.saveUser(user);
             return "redirect:/admin";
+        } catch (PasswordHashingBusyException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error creating user", e);
             model.addAttribute("error", e.getMessage());
@@ -57,9 +141,9 @@ public class AdminController {
 
     @GetMapping("/{id}/edit")
     public String editUserForm(@PathVariable("id") Long id, Model model) {
-        User user = userService.getUserByIdWithRoles(id)
+        UserSummary user = userService.getUserSummary(id)
                 .orElseThrow(() -> new IllegalArgumentException("Invalid user Id: " + id));
-        model.addAttribute("user", user);
+        model.addAttribute("user", editForm(user));
         model.addAttribute("allRoles", roleService.getAllRoles());
         return "admin/edit";
     }
@@ -73,13 +157,18 @@ public class AdminController {
         try {
             user.setId(id);
             if (roleIds != null) {
-                Set<Role> roles = roleService.getAllRoles().stream()
-                        .filter(r -> roleIds.contains(r.getId()))
-                        .collect(Collectors.toSet());
-                user.setRoles(roles);
+                user.setRoles(roleService.getRolesByIds(roleIds));
             }
             userService.updateUser(user);
             return "redirect:/admin";
+        } catch (PasswordHashingBusyException e) {
+            throw e;
+        } catch (OptimisticLockingFailureException e) {
+            logger.warn("User {} was changed by someone else while being edited", id);
+            userService.getUserSummary(id).ifPresent(current -> model.addAttribute("user", editForm(current)));
+            model.addAttribute("error", "User was modified by someone else. The form now shows the latest data.");
+            model.addAttribute("allRoles", roleService.getAllRoles());
+            return "admin/edit";
         } catch (Exception e) {
             logger.error("Error updating user", e);
             model.addAttribute("error", e.getMessage());
@@ -88,6 +177,22 @@ public class AdminController {
         }
     }
 
+    // detached form object built from the projection; the password field stays empty
+    private User editForm(UserSummary summary) {
+        User form = new User(summary.getName(), summary.getAge(), summary.getEmail(), null);
+        form.setId(summary.getId());
+        form.setVersion(summary.getVersion());
+        Set<Role> roles = new HashSet<>();
+        for (String name : summary.getRoles()) {
+            Role role = roleService.getRoleByName(name);
+            if (role != null) {
+                roles.add(role);
+            }
+        }
+        form.setRoles(roles);
+        return form;
+    }
+
     @PostMapping("/{id}/delete")
     public String deleteUser(@PathVariable("id") Long id) {
         try {
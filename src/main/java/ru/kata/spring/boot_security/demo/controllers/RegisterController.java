@@ -9,6 +9,7 @@ import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import ru.kata.spring.boot_security.demo.model.Role;
 import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.DuplicateEmailException;
 import ru.kata.spring.boot_security.demo.service.RoleService;
 import ru.kata.spring.boot_security.demo.service.UserService;
 
@@ -45,6 +46,9 @@ public class RegisterController {
             userService.saveUser(user);
             logger.info("Registered new user: {}", user.getEmail());
             return "redirect:/login?registered";
+        } catch (DuplicateEmailException e) {
+            br.rejectValue("email", "duplicate", e.getMessage());
+            return "register";
         } catch (IllegalArgumentException e) {
             model.addAttribute("emailError", e.getMessage());
             return "register";
@@ -0,0 +1,71 @@
+package ru.kata.spring.boot_security.demo.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
+import ru.kata.spring.boot_security.demo.dto.RoleSummary;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.service.RoleService;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/roles")
+public class RoleApiController {
+
+    private final RoleService roleService;
+
+    @Autowired
+    public RoleApiController(RoleService roleService) {
+        this.roleService = roleService;
+    }
+
+    @GetMapping
+    public List<RoleSummary> list() {
+        return roleService.getAllRoles().stream()
+                .map(RoleSummary::of)
+                .collect(Collectors.toList());
+    }
+
+    @GetMapping("/{id}")
+    public RoleSummary get(@PathVariable("id") Long id) {
+        return RoleSummary.of(find(id));
+    }
+
+    @PostMapping
+    public ResponseEntity<RoleSummary> create(@RequestBody Map<String, String> body, UriComponentsBuilder uri) {
+        Role role = new Role(body.get("name"));
+        roleService.saveRole(role);
+        return ResponseEntity.created(uri.path("/api/roles/{id}").buildAndExpand(role.getId()).toUri())
+                .body(RoleSummary.of(role));
+    }
+
+    @PatchMapping("/{id}")
+    public RoleSummary rename(@PathVariable("id") Long id, @RequestBody Map<String, String> body) {
+        find(id);
+        Role role = new Role(body.get("name"));
+        role.setId(id);
+        roleService.saveRole(role);
+        return RoleSummary.of(role);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> delete(@PathVariable("id") Long id) {
+        find(id);
+        roleService.deleteRole(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    private Role find(Long id) {
+        Role role = roleService.getRoleById(id);
+        if (role == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Role " + id + " not found");
+        }
+        return role;
+    }
+}
@@ -0,0 +1,161 @@
+package ru.kata.spring.boot_security.demo.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
+import ru.kata.spring.boot_security.demo.dao.UserSort;
+import ru.kata.spring.boot_security.demo.dto.UserRequest;
+import ru.kata.spring.boot_security.demo.dto.UserSummary;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.RoleService;
+import ru.kata.spring.boot_security.demo.service.UserPage;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JSON user management for internal tools. Responses are {@link UserSummary} projections, so the
+ * password hash is never loaded; the ETag is the row version and doubles as the If-Match
+ * precondition for PATCH. PATCH requires either If-Match or a version in the body and answers 428
+ * without one; {@code If-Match: *} is the explicit way to overwrite whatever is stored.
+ */
+@RestController
+@RequestMapping("/api/users")
+public class UserApiController {
+
+    private static final String DEFAULT_ROLE = "ROLE_USER";
+
+    private final UserService userService;
+    private final RoleService roleService;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    @Autowired
+    public UserApiController(UserService userService, RoleService roleService,
+                             @Value("${app.admin.page-size:50}") int defaultPageSize,
+                             @Value("${app.admin.max-page-size:500}") int maxPageSize) {
+        this.userService = userService;
+        this.roleService = roleService;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    @GetMapping
+    public Map<String, Object> list(@RequestParam(value = "after", required = false) String after,
+                                    @RequestParam(value = "size", required = false) Integer size,
+                                    @RequestParam(value = "sort", defaultValue = "id") String sort,
+                                    @RequestParam(value = "dir", defaultValue = "asc") String dir) {
+        int pageSize = size == null || size < 1 ? defaultPageSize : Math.min(size, maxPageSize);
+        UserPage<UserSummary> page = userService.getUserSummaryPage(UserSort.fromParam(sort),
+                "desc".equalsIgnoreCase(dir), after, pageSize);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("content", page.getContent());
+        body.put("sort", page.getSortParam());
+        body.put("dir", page.getDirParam());
+        body.put("size", page.getSize());
+        body.put("nextCursor", page.getNextCursor());
+        return body;
+    }
+
+    // a matching If-None-Match is answered with 304 by the ResponseEntity handler
+    @GetMapping("/{id}")
+    public ResponseEntity<UserSummary> get(@PathVariable("id") Long id) {
+        UserSummary user = find(id);
+        return ResponseEntity.ok().eTag(etag(user)).body(user);
+    }
+
+    @PostMapping
+    public ResponseEntity<UserSummary> create(@Validated(UserRequest.Create.class) @RequestBody UserRequest request,
+                                              UriComponentsBuilder uri) {
+        User user = new User();
+        user.setName(request.getName());
+        user.setAge(request.getAge());
+        user.setEmail(request.getEmail());
+        user.setPassword(request.getPassword());
+        user.setRoles(resolveRoles(request.getRoles() == null ? List.of(DEFAULT_ROLE) : request.getRoles()));
+        userService.saveUser(user);
+        UserSummary created = find(user.getId());
+        return ResponseEntity.created(uri.path("/api/users/{id}").buildAndExpand(created.getId()).toUri())
+                .eTag(etag(created))
+                .body(created);
+    }
+
+    @PatchMapping("/{id}")
+    public ResponseEntity<UserSummary> update(@PathVariable("id") Long id,
+                                              @RequestBody UserRequest request,
+                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (ifMatch == null && request.getVersion() == null) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_REQUIRED,
+                    "Send If-Match with the ETag of the user, or the version in the body");
+        }
+        UserSummary current = find(id);
+        User user = new User();
+        user.setId(id);
+        user.setName(request.getName());
+        user.setAge(request.getAge() != null ? request.getAge() : current.getAge());
+        user.setEmail(request.getEmail());
+        user.setPassword(request.getPassword());
+        if (request.getRoles() != null) {
+            user.setRoles(resolveRoles(request.getRoles()));
+        }
+        // null only for If-Match: *, which updates whatever version is stored
+        user.setVersion(ifMatch != null ? parseEtag(ifMatch) : request.getVersion());
+        userService.updateUser(user);
+        UserSummary updated = find(id);
+        return ResponseEntity.ok().eTag(etag(updated)).body(updated);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> delete(@PathVariable("id") Long id) {
+        find(id);
+        userService.deleteUser(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    private UserSummary find(Long id) {
+        return userService.getUserSummary(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User " + id + " not found"));
+    }
+
+    private Set<Role> resolveRoles(List<String> names) {
+        Set<Role> roles = new HashSet<>();
+        for (String name : names) {
+            Role role = roleService.getRoleByName(name);
+            if (role == null) {
+                throw new IllegalArgumentException("Unknown role: " + name);
+            }
+            roles.add(role);
+        }
+        return roles;
+    }
+
+    private static String etag(UserSummary user) {
+        return "\"" + user.getVersion() + "\"";
+    }
+
+    private static Long parseEtag(String etag) {
+        String value = etag.trim();
+        if ("*".equals(value)) {
+            return null;
+        }
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        try {
+            return Long.valueOf(value.replace("\"", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed If-Match header: " + etag);
+        }
+    }
+}
@@ -1,16 +1,40 @@
 package ru.kata.spring.boot_security.demo.controllers;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
-import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.dto.UserSummary;
+import ru.kata.spring.boot_security.demo.service.TokenPrincipal;
+import ru.kata.spring.boot_security.demo.service.UserPrincipal;
+import ru.kata.spring.boot_security.demo.service.UserService;
 
 @Controller
 public class UserController {
 
+    private final UserService userService;
+
+    @Autowired
+    public UserController(UserService userService) {
+        this.userService = userService;
+    }
+
     @GetMapping("/user")
-    public String userPage(@AuthenticationPrincipal User user, Model model) {
+    public String userPage(@AuthenticationPrincipal Object principal, Model model) {
+        Long id;
+        if (principal instanceof UserPrincipal) {
+            id = ((UserPrincipal) principal).getId();
+        } else if (principal instanceof TokenPrincipal) {
+            id = ((TokenPrincipal) principal).getId();
+        } else {
+            // both login paths produce one of the above, anything else is a wiring mistake
+            throw new IllegalStateException("Unsupported principal type: "
+                    + (principal == null ? "none" : principal.getClass().getName()));
+        }
+        // the principal only carries identity, display data is read fresh
+        UserSummary user = userService.getUserSummary(id)
+                .orElseThrow(() -> new IllegalArgumentException("Invalid user Id: " + id));
         model.addAttribute("user", user);
         return "user/user";
     }
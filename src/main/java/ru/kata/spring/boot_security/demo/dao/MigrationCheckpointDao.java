@@ -0,0 +1,10 @@
+package ru.kata.spring.boot_security.demo.dao;
+
+import ru.kata.spring.boot_security.demo.model.MigrationCheckpoint;
+
+public interface MigrationCheckpointDao {
+
+    MigrationCheckpoint findOrCreate(String name);
+
+    void save(MigrationCheckpoint checkpoint);
+}
@@ -0,0 +1,33 @@
+package ru.kata.spring.boot_security.demo.dao;
+
+import org.springframework.stereotype.Repository;
+import ru.kata.spring.boot_security.demo.model.MigrationCheckpoint;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDateTime;
+
+@Repository
+public class MigrationCheckpointDaoImpl implements MigrationCheckpointDao {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public MigrationCheckpoint findOrCreate(String name) {
+        MigrationCheckpoint checkpoint = em.find(MigrationCheckpoint.class, name);
+        if (checkpoint == null) {
+            checkpoint = new MigrationCheckpoint(name);
+            em.persist(checkpoint);
+        }
+        return checkpoint;
+    }
+
+    @Override
+    public void save(MigrationCheckpoint checkpoint) {
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        if (!em.contains(checkpoint)) {
+            em.merge(checkpoint);
+        }
+    }
+}
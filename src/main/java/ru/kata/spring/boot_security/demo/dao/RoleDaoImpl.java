@@ -1,5 +1,8 @@
 package ru.kata.spring.boot_security.demo.dao;
 
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Repository;
 import ru.kata.spring.boot_security.demo.model.Role;
 
@@ -14,6 +17,13 @@ public class RoleDaoImpl implements RoleDao {
     @PersistenceContext
     private EntityManager em;
 
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    public RoleDaoImpl(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
     @Override
     public List<Role> findAll() {
         TypedQuery<Role> query = em.createQuery("SELECT r FROM Role r", Role.class);
@@ -29,6 +39,8 @@ public class RoleDaoImpl implements RoleDao {
     public Role findByName(String name) {
         TypedQuery<Role> query = em.createQuery("SELECT r FROM Role r WHERE r.name = :name", Role.class);
         query.setParameter("name", name);
+        query.setHint(QueryHints.CACHEABLE, true);
+        query.setHint(QueryHints.CACHE_REGION, "query.role-by-name");
         return query.getSingleResult();
     }
 
@@ -39,6 +51,7 @@ public class RoleDaoImpl implements RoleDao {
         } else {
             em.merge(role);
         }
+        eventPublisher.publishEvent(new RolesChangedEvent(role.getId()));
     }
 
     @Override
@@ -46,6 +59,7 @@ public class RoleDaoImpl implements RoleDao {
         Role role = em.find(Role.class, id);
         if (role != null) {
             em.remove(role);
+            eventPublisher.publishEvent(new RolesChangedEvent(id));
         }
     }
 }
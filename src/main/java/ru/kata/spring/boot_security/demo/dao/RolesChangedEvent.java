@@ -0,0 +1,14 @@
+package ru.kata.spring.boot_security.demo.dao;
+
+public class RolesChangedEvent {
+
+    private final Long roleId;
+
+    public RolesChangedEvent(Long roleId) {
+        this.roleId = roleId;
+    }
+
+    public Long getRoleId() {
+        return roleId;
+    }
+}
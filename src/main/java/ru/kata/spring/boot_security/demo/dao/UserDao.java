@@ -1,9 +1,14 @@
 package ru.kata.spring.boot_security.demo.dao;
 
+import ru.kata.spring.boot_security.demo.dto.StoredPassword;
+import ru.kata.spring.boot_security.demo.dto.UserSummary;
 import ru.kata.spring.boot_security.demo.model.User;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface UserDao {
 
@@ -11,6 +16,14 @@ public interface UserDao {
 
     List<User> findAllWithRoles();
 
+    List<StoredPassword> findPasswordsAfterId(long afterId, int limit);
+
+    long streamAllWithRoles(int fetchSize, Consumer<UserSummary> consumer);
+
+    List<UserSummary> findSummaryPage(UserSort sort, boolean descending, String after, int limit);
+
+    Optional<UserSummary> findSummaryById(Long id);
+
 
     Optional<User> findById(Long id);
 
@@ -19,6 +32,8 @@ public interface UserDao {
 
     void save(User user);
 
+    void saveAll(List<User> users, int flushEvery);
+
     void update(User user);
 
     void delete(Long id);
@@ -29,4 +44,12 @@ public interface UserDao {
     Optional<User> findByEmailWithRoles(String email);
 
     boolean existsByEmail(String email);
+
+    Set<String> findExistingEmails(Collection<String> emails);
+
+    int updatePassword(Long id, String expectedPassword, String newPassword);
+
+    Optional<Long> findTokenEpoch(Long id);
+
+    int incrementTokenEpoch(Long id);
 }
\ No newline at end of file
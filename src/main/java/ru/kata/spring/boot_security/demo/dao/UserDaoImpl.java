@@ -1,21 +1,40 @@
 package ru.kata.spring.boot_security.demo.dao;
 
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.kata.spring.boot_security.demo.dto.StoredPassword;
+import ru.kata.spring.boot_security.demo.dto.UserSummary;
 import ru.kata.spring.boot_security.demo.model.User;
 
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Repository
 public class UserDaoImpl implements UserDao {
 
     private static final Logger logger = LoggerFactory.getLogger(UserDaoImpl.class);
+    private static final int EMAIL_LOOKUP_BATCH = 1000;
 
     @PersistenceContext
     private EntityManager entityManager;
@@ -34,6 +53,115 @@ public class UserDaoImpl implements UserDao {
                 User.class).getResultList();
     }
 
+    @Override
+    // scalar rows, so a full scan neither hydrates entities nor pushes hot logins out of the user region
+    public List<StoredPassword> findPasswordsAfterId(long afterId, int limit) {
+        logger.debug("Finding up to {} passwords with user id greater than {}", limit, afterId);
+        return entityManager.createQuery(
+                        "SELECT new ru.kata.spring.boot_security.demo.dto.StoredPassword(u.id, u.password) " +
+                                "FROM User u WHERE u.id > :afterId ORDER BY u.id", StoredPassword.class)
+                .setParameter("afterId", afterId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    // Scalar rows are never attached to the session, so memory stays flat without clearing it;
+    // the fetch size bounds how many rows the driver holds at a time.
+    @Override
+    public long streamAllWithRoles(int fetchSize, Consumer<UserSummary> consumer) {
+        logger.debug("Streaming all users with roles, fetch size {}", fetchSize);
+        Session session = entityManager.unwrap(Session.class);
+        long rows = 0;
+        long users = 0;
+        try (ScrollableResults results = session.createQuery(
+                        "SELECT u.id, u.name, u.age, u.email, u.version, r.name FROM User u " +
+                                "LEFT JOIN u.roles r ORDER BY u.id")
+                .setFetchSize(fetchSize)
+                .setReadOnly(true)
+                .setCacheable(false)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            Object[] current = null;
+            List<String> roles = new ArrayList<>();
+            while (results.next()) {
+                Object[] row = results.get();
+                if (current != null && !current[0].equals(row[0])) {
+                    consumer.accept(toSummary(current, roles));
+                    users++;
+                    roles = new ArrayList<>();
+                }
+                current = row;
+                if (row[5] != null) {
+                    roles.add((String) row[5]);
+                }
+                rows++;
+            }
+            if (current != null) {
+                consumer.accept(toSummary(current, roles));
+                users++;
+            }
+        }
+        logger.debug("Streamed {} users from {} rows", users, rows);
+        return users;
+    }
+
+    @Override
+    public List<UserSummary> findSummaryPage(UserSort sort, boolean descending, String after, int limit) {
+        logger.debug("Finding summary page of users sorted by {} {} after {} limit {}",
+                sort, descending ? "desc" : "asc", after, limit);
+        String property = "u." + sort.getProperty();
+        StringBuilder jpql = new StringBuilder("SELECT u.id, u.name, u.age, u.email, u.version FROM User u");
+        if (after != null) {
+            jpql.append(" WHERE ").append(property).append(descending ? " < " : " > ").append(":after");
+        }
+        jpql.append(" ORDER BY ").append(property).append(descending ? " DESC" : " ASC");
+
+        TypedQuery<Object[]> query = entityManager.createQuery(jpql.toString(), Object[].class)
+                .setFlushMode(FlushModeType.COMMIT)
+                .setMaxResults(limit);
+        if (after != null) {
+            query.setParameter("after", sort.parseCursor(after));
+        }
+        return withRoleNames(query.getResultList());
+    }
+
+    @Override
+    public Optional<UserSummary> findSummaryById(Long id) {
+        logger.debug("Finding summary of user with id {}", id);
+        List<Object[]> rows = entityManager.createQuery(
+                        "SELECT u.id, u.name, u.age, u.email, u.version FROM User u WHERE u.id = :id", Object[].class)
+                .setFlushMode(FlushModeType.COMMIT)
+                .setParameter("id", id)
+                .getResultList();
+        return withRoleNames(rows).stream().findFirst();
+    }
+
+    // Scalar rows never enter the persistence context (no entity instances, snapshots or
+    // lazy proxies) and never carry the password hash. COMMIT flush mode skips the dirty
+    // check an AUTO flush would run before each query.
+    private List<UserSummary> withRoleNames(List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        List<Long> ids = rows.stream().map(row -> (Long) row[0]).collect(Collectors.toList());
+        Map<Long, List<String>> roles = new HashMap<>();
+        for (Object[] pair : entityManager.createQuery(
+                        "SELECT u.id, r.name FROM User u JOIN u.roles r WHERE u.id IN :ids ORDER BY r.name", Object[].class)
+                .setFlushMode(FlushModeType.COMMIT)
+                .setParameter("ids", ids)
+                .getResultList()) {
+            roles.computeIfAbsent((Long) pair[0], k -> new ArrayList<>()).add((String) pair[1]);
+        }
+        List<UserSummary> summaries = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            summaries.add(toSummary(row, roles.getOrDefault((Long) row[0], List.of())));
+        }
+        return summaries;
+    }
+
+    private static UserSummary toSummary(Object[] row, List<String> roles) {
+        return new UserSummary((Long) row[0], (String) row[1], (Integer) row[2], (String) row[3], (Long) row[4], roles);
+    }
+
     @Override
     public Optional<User> findById(Long id) {
         logger.debug("Finding user with id {}", id);
@@ -77,13 +205,30 @@ public class UserDaoImpl implements UserDao {
         }
         try {
             entityManager.persist(user);
-            logger.info("User with email {} saved", user.getEmail());
+            // the unique index on email is the duplicate check, so surface it now
+            entityManager.flush();
+            logger.debug("User with email {} saved", user.getEmail());
         } catch (Exception e) {
             logger.error("Error saving user with email: {}", user.getEmail(), e);
             throw e;
         }
     }
 
+    @Override
+    public void saveAll(List<User> users, int flushEvery) {
+        logger.debug("Saving {} users in batches of {}", users.size(), flushEvery);
+        int pending = 0;
+        for (User user : users) {
+            entityManager.persist(user);
+            if (++pending % flushEvery == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
     @Override
     public void update(User user) {
         logger.debug("Updating user with id: {} and email: {}", user.getId(), user.getEmail());
@@ -96,8 +241,13 @@ public class UserDaoImpl implements UserDao {
             throw new IllegalArgumentException("User ID cannot be null for update");
         }
         try {
-            entityManager.merge(user);
-            logger.info("Successfully updated user with id: {}", user.getId());
+            if (entityManager.contains(user)) {
+                // flush here so the version check fails inside the DAO rather than at commit
+                entityManager.flush();
+            } else {
+                entityManager.merge(user);
+            }
+            logger.debug("Successfully updated user with id: {}", user.getId());
         } catch (Exception e) {
             logger.error("Error updating user with id: {}", user.getId(), e);
             throw e;
@@ -118,7 +268,7 @@ public class UserDaoImpl implements UserDao {
             if (user.isPresent()) {
                 User userToDelete = user.get();
                 entityManager.remove(userToDelete);
-                logger.info("Successfully deleted user with id: {}", id);
+                logger.debug("Successfully deleted user with id: {}", id);
             } else {
                 logger.warn("User with id {} not found for deletion", id);
             }
@@ -137,8 +287,8 @@ public class UserDaoImpl implements UserDao {
         }
         try {
             TypedQuery<User> query = entityManager.createQuery(
-                    "SELECT u FROM User u WHERE u.email = :email", User.class);
-            query.setParameter("email", email.trim());
+                    "SELECT u FROM User u WHERE lower(u.email) = :email", User.class);
+            query.setParameter("email", User.normalizeEmail(email));
 
             User user = query.getSingleResult();
             return Optional.of(user);
@@ -161,8 +311,8 @@ public class UserDaoImpl implements UserDao {
         }
         try {
             TypedQuery<User> query = entityManager.createQuery(
-                    "SELECT u FROM User u LEFT JOIN FETCH u.roles WHERE u.email = :email", User.class);
-            query.setParameter("email", email.trim());
+                    "SELECT u FROM User u LEFT JOIN FETCH u.roles WHERE lower(u.email) = :email", User.class);
+            query.setParameter("email", User.normalizeEmail(email));
 
             User user = query.getSingleResult();
             return Optional.of(user);
@@ -185,8 +335,8 @@ public class UserDaoImpl implements UserDao {
         }
         try {
             Long count = entityManager.createQuery(
-                            "SELECT COUNT(u) FROM User u WHERE u.email = :email", Long.class)
-                    .setParameter("email", email.trim())
+                            "SELECT COUNT(u) FROM User u WHERE lower(u.email) = :email", Long.class)
+                    .setParameter("email", User.normalizeEmail(email))
                     .getSingleResult();
 
             boolean exists = count > 0;
@@ -197,4 +347,94 @@ public class UserDaoImpl implements UserDao {
             return false;
         }
     }
+
+    @Override
+    public Set<String> findExistingEmails(Collection<String> emails) {
+        logger.debug("Checking {} emails for existing users", emails.size());
+        Set<String> existing = new HashSet<>();
+        List<String> batch = new ArrayList<>(EMAIL_LOOKUP_BATCH);
+        for (String email : emails) {
+            batch.add(User.normalizeEmail(email));
+            if (batch.size() == EMAIL_LOOKUP_BATCH) {
+                existing.addAll(findEmailsIn(batch));
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            existing.addAll(findEmailsIn(batch));
+        }
+        return existing;
+    }
+
+    private List<String> findEmailsIn(List<String> emails) {
+        return entityManager.createQuery(
+                        "SELECT lower(u.email) FROM User u WHERE lower(u.email) IN :emails", String.class)
+                .setParameter("emails", emails)
+                .getResultList();
+    }
+
+    // Plain JDBC on purpose: a JPQL bulk UPDATE makes Hibernate drop the whole User cache region,
+    // which on every login upgrade would throw away every other cached user. The version is bumped
+    // so an admin edit still holding the old one fails its optimistic check, and only this user's
+    // second-level cache entry is evicted, again after commit so a concurrent load cannot re-cache
+    // the old row.
+    @Override
+    public int updatePassword(Long id, String expectedPassword, String newPassword) {
+        logger.debug("Updating password hash for user with id: {}", id);
+        int updated = entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE users SET password = ?, version = version + 1 WHERE id = ? AND password = ?")) {
+                statement.setString(1, newPassword);
+                statement.setLong(2, id);
+                statement.setString(3, expectedPassword);
+                return statement.executeUpdate();
+            }
+        });
+        if (updated == 0) {
+            logger.debug("Password of user with id {} changed concurrently, hash not replaced", id);
+            return 0;
+        }
+        evictFromSecondLevelCache(id);
+        return updated;
+    }
+
+    // A scalar select never reads the node-local user region, so an epoch bumped by another node is
+    // seen at once. A cached entity could keep a revoked token valid until the region's TTL.
+    @Override
+    public Optional<Long> findTokenEpoch(Long id) {
+        return entityManager.createQuery("SELECT u.tokenEpoch FROM User u WHERE u.id = :id", Long.class)
+                .setParameter("id", id)
+                .getResultStream()
+                .findFirst();
+    }
+
+    @Override
+    public int incrementTokenEpoch(Long id) {
+        logger.debug("Incrementing token epoch of user with id: {}", id);
+        int updated = entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE users SET token_epoch = token_epoch + 1, version = version + 1 WHERE id = ?")) {
+                statement.setLong(1, id);
+                return statement.executeUpdate();
+            }
+        });
+        if (updated > 0) {
+            evictFromSecondLevelCache(id);
+        }
+        return updated;
+    }
+
+    // the row was changed behind Hibernate's back, drop it now and again once the change is visible
+    private void evictFromSecondLevelCache(Long id) {
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        cache.evict(User.class, id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.evict(User.class, id);
+                }
+            });
+        }
+    }
 }
\ No newline at end of file
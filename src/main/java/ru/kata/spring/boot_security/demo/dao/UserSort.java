@@ -0,0 +1,56 @@
+package ru.kata.spring.boot_security.demo.dao;
+
+import ru.kata.spring.boot_security.demo.dto.UserSummary;
+
+import java.util.Locale;
+
+public enum UserSort {
+
+    ID("id") {
+        @Override
+        public Object parseCursor(String cursor) {
+            return Long.valueOf(cursor);
+        }
+
+        @Override
+        public String cursorOf(UserSummary user) {
+            return String.valueOf(user.getId());
+        }
+    },
+    EMAIL("email") {
+        @Override
+        public Object parseCursor(String cursor) {
+            return cursor;
+        }
+
+        @Override
+        public String cursorOf(UserSummary user) {
+            return user.getEmail();
+        }
+    };
+
+    private final String property;
+
+    UserSort(String property) {
+        this.property = property;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public abstract Object parseCursor(String cursor);
+
+    public abstract String cursorOf(UserSummary user);
+
+    public static UserSort fromParam(String value) {
+        if (value != null) {
+            for (UserSort sort : values()) {
+                if (sort.property.equals(value.trim().toLowerCase(Locale.ROOT))) {
+                    return sort;
+                }
+            }
+        }
+        return ID;
+    }
+}
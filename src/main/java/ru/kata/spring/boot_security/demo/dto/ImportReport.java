@@ -0,0 +1,74 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ImportReport {
+
+    private final int total;
+    private int imported;
+    private long elapsedMillis;
+    private final List<RowError> errors = new ArrayList<>();
+
+    public ImportReport(int total) {
+        this.total = total;
+    }
+
+    public void addImported(int count) {
+        imported += count;
+    }
+
+    public void addError(int line, String email, String message) {
+        errors.add(new RowError(line, email, message));
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getImported() {
+        return imported;
+    }
+
+    public int getFailed() {
+        return errors.size();
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public List<RowError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    public static final class RowError {
+
+        private final int line;
+        private final String email;
+        private final String message;
+
+        public RowError(int line, String email, String message) {
+            this.line = line;
+            this.email = email;
+            this.message = message;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import ru.kata.spring.boot_security.demo.model.Role;
+
+public final class RoleSummary {
+
+    private final Long id;
+    private final String name;
+
+    public RoleSummary(Long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public static RoleSummary of(Role role) {
+        return new RoleSummary(role.getId(), role.getName());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "RoleSummary{id=" + id + ", name='" + name + "'}";
+    }
+}
@@ -0,0 +1,28 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+/**
+ * The stored password hash of one user, read without loading the entity.
+ */
+public final class StoredPassword {
+
+    private final Long id;
+    private final String password;
+
+    public StoredPassword(Long id, String password) {
+        this.id = id;
+        this.password = password;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public String toString() {
+        return "StoredPassword{id=" + id + "}";
+    }
+}
@@ -0,0 +1,75 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+/**
+ * Body of POST and PATCH /api/users. On PATCH every null field keeps its current value, so the
+ * required fields are only checked in the {@link Create} group.
+ */
+public class UserRequest {
+
+    /** Validation group for POST, where the user does not exist yet. */
+    public interface Create {
+    }
+
+    @NotBlank(groups = Create.class, message = "Name is required")
+    private String name;
+    @NotNull(groups = Create.class, message = "Age is required")
+    private Integer age;
+    @NotBlank(groups = Create.class, message = "Email is required")
+    private String email;
+    @NotBlank(groups = Create.class, message = "Password is required")
+    private String password;
+    private List<String> roles;
+    private Long version;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Integer getAge() {
+        return age;
+    }
+
+    public void setAge(Integer age) {
+        this.age = age;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public List<String> getRoles() {
+        return roles;
+    }
+
+    public void setRoles(List<String> roles) {
+        this.roles = roles;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
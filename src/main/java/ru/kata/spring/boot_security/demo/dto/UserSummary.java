@@ -0,0 +1,51 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import java.util.List;
+
+public final class UserSummary {
+
+    private final Long id;
+    private final String name;
+    private final int age;
+    private final String email;
+    private final Long version;
+    private final List<String> roles;
+
+    public UserSummary(Long id, String name, int age, String email, Long version, List<String> roles) {
+        this.id = id;
+        this.name = name;
+        this.age = age;
+        this.email = email;
+        this.version = version;
+        this.roles = List.copyOf(roles);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public List<String> getRoles() {
+        return roles;
+    }
+
+    @Override
+    public String toString() {
+        return "UserSummary{id=" + id + ", email='" + email + "'}";
+    }
+}
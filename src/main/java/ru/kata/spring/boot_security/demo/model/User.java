@@ -1,18 +1,29 @@
 package ru.kata.spring.boot_security.demo.model;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import javax.persistence.*;
 import java.util.Collection;
+import java.util.Locale;
 import java.util.Set;
 
 @Entity
 @Table(name = "users")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user")
+@DynamicUpdate
 public class User implements UserDetails {
 
+    // unique index on lower(email), see V1 and V6
+    public static final String EMAIL_CONSTRAINT = "uk_users_email_lower";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
@@ -22,13 +33,14 @@ public class User implements UserDetails {
     @Column(name = "age")
     private int age;
 
-    @Column(name = "email", unique = true, nullable = false)
+    @Column(name = "email", nullable = false)
     private String email;
 
     @Column(name = "password", nullable = false)
     private String password;
 
     @ManyToMany(fetch = FetchType.LAZY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user.roles")
     @JoinTable(
             name = "users_roles",
             joinColumns = @JoinColumn(name = "user_id"),
@@ -36,16 +48,29 @@ public class User implements UserDetails {
     )
     private Set<Role> roles;
 
+    @Version
+    @Column(name = "version")
+    private Long version;
+
+    // tokens carry the epoch they were issued under; bumping it revokes them all
+    @Column(name = "token_epoch", nullable = false)
+    private long tokenEpoch;
+
     public User() {
     }
 
     public User(String name, int age, String email, String password) {
         this.name = name;
         this.age = age;
-        this.email = email;
+        this.email = normalizeEmail(email);
         this.password = password;
     }
 
+    // emails are stored trimmed and lower-cased so lookups can use the lower(email) index
+    public static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
     public Long getId() {
         return id;
     }
@@ -75,7 +100,7 @@ public class User implements UserDetails {
     }
 
     public void setEmail(String email) {
-        this.email = email;
+        this.email = normalizeEmail(email);
     }
 
     public void setPassword(String password) {
@@ -90,6 +115,22 @@ public class User implements UserDetails {
         this.roles = roles;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public long getTokenEpoch() {
+        return tokenEpoch;
+    }
+
+    public void setTokenEpoch(long tokenEpoch) {
+        this.tokenEpoch = tokenEpoch;
+    }
+
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
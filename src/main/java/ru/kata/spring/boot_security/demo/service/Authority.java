@@ -0,0 +1,78 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Authorities known to the security configuration, each mapped to one bit of {@link UserPrincipal#getAuthorityBits()}.
+ * Append new constants at the end, the ordinal is the bit position.
+ */
+public enum Authority {
+
+    ADMIN("ROLE_ADMIN"),
+    USER("ROLE_USER");
+
+    private static final Authority[] VALUES = values();
+    private static final Logger logger = LoggerFactory.getLogger(Authority.class);
+    private static final Set<String> reportedUnknown = ConcurrentHashMap.newKeySet();
+
+    private final String name;
+    private final GrantedAuthority grantedAuthority;
+
+    Authority(String name) {
+        this.name = name;
+        this.grantedAuthority = new SimpleGrantedAuthority(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long bit() {
+        return 1L << ordinal();
+    }
+
+    public static Authority fromName(String name) {
+        for (Authority authority : VALUES) {
+            if (authority.name.equals(name)) {
+                return authority;
+            }
+        }
+        return null;
+    }
+
+    // Roles without a constant here are not referenced by any access rule and cannot be carried
+    // in the bit set. They are dropped, with a warning the first time each one is seen, so a role
+    // added to the database without a matching constant does not silently grant nothing.
+    public static long toBits(Collection<? extends GrantedAuthority> authorities) {
+        long bits = 0;
+        for (GrantedAuthority granted : authorities) {
+            Authority authority = fromName(granted.getAuthority());
+            if (authority != null) {
+                bits |= authority.bit();
+            } else if (reportedUnknown.add(String.valueOf(granted.getAuthority()))) {
+                logger.warn("Role {} has no Authority constant and is ignored at login; add it to {} to grant it",
+                        granted.getAuthority(), Authority.class.getSimpleName());
+            }
+        }
+        return bits;
+    }
+
+    public static List<GrantedAuthority> fromBits(long bits) {
+        List<GrantedAuthority> authorities = new ArrayList<>(VALUES.length);
+        for (Authority authority : VALUES) {
+            if ((bits & authority.bit()) != 0) {
+                authorities.add(authority.grantedAuthority);
+            }
+        }
+        return authorities;
+    }
+}
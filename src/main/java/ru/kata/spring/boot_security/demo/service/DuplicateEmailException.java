@@ -0,0 +1,22 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.hibernate.exception.ConstraintViolationException;
+import ru.kata.spring.boot_security.demo.model.User;
+
+public class DuplicateEmailException extends IllegalArgumentException {
+
+    public DuplicateEmailException(String email, Throwable cause) {
+        super("User with email " + email + " already exists", cause);
+    }
+
+    // true when the unique email index rejected a write, see User#EMAIL_CONSTRAINT
+    public static boolean isEmailConstraintViolation(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ConstraintViolationException) {
+                String constraint = ((ConstraintViolationException) t).getConstraintName();
+                return User.EMAIL_CONSTRAINT.equals(constraint);
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,286 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counts login attempts per email and per client address in sliding windows and tells the login
+ * filter when to reject an attempt before any user lookup or password hashing happens.
+ * <p>
+ * {@link #tryAcquire} checks the limit and counts the attempt in one CAS on the key's
+ * {@link AtomicLong}, so concurrent attempts cannot all pass a check made before any of them has
+ * failed. The slot is kept when the login fails and handed back by {@link #recordSuccess} or
+ * {@link #release}. When a map reaches its size bound, expired windows are evicted, then idle ones,
+ * then the ones with the fewest attempts, so a spray of one-off keys cannot push out the keys under
+ * attack, and new keys are always tracked: a full map never turns into a lockout of everyone.
+ */
+@Component
+public class LoginAttemptLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginAttemptLimiter.class);
+
+    private static final long COUNT_MASK = 0xFFFFL;
+    private static final long PREVIOUS_ONE = 1L << 16;
+    // a full map is trimmed to this share of its bound, so sweeps stay rare under a spray
+    private static final double SWEEP_TARGET = 0.9;
+
+    private final boolean enabled;
+    private final long windowMillis;
+    private final int maxFailuresPerEmail;
+    private final int maxFailuresPerAddress;
+    private final int maxEntries;
+    private final LongSupplier clock;
+
+    private final ConcurrentMap<String, AtomicLong> emailWindows = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> addressWindows = new ConcurrentHashMap<>();
+
+    private final LongAdder rejectedByEmail = new LongAdder();
+    private final LongAdder rejectedByAddress = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder failuresRecorded = new LongAdder();
+
+    @Autowired
+    public LoginAttemptLimiter(@Value("${app.security.login-limit.enabled:true}") boolean enabled,
+                               @Value("${app.security.login-limit.window:PT5M}") Duration window,
+                               @Value("${app.security.login-limit.max-failures-per-email:5}") int maxFailuresPerEmail,
+                               @Value("${app.security.login-limit.max-failures-per-address:50}") int maxFailuresPerAddress,
+                               @Value("${app.security.login-limit.max-entries:100000}") int maxEntries) {
+        this(enabled, window, maxFailuresPerEmail, maxFailuresPerAddress, maxEntries, System::currentTimeMillis);
+    }
+
+    // package-private so tests can move the clock across window boundaries
+    LoginAttemptLimiter(boolean enabled, Duration window, int maxFailuresPerEmail, int maxFailuresPerAddress,
+                        int maxEntries, LongSupplier clock) {
+        if (window.toMillis() < 1000) {
+            throw new IllegalArgumentException("Login limit window must be at least one second");
+        }
+        this.enabled = enabled;
+        this.windowMillis = window.toMillis();
+        this.maxFailuresPerEmail = maxFailuresPerEmail;
+        this.maxFailuresPerAddress = maxFailuresPerAddress;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Duration getWindow() {
+        return Duration.ofMillis(windowMillis);
+    }
+
+    /**
+     * Counts the attempt against its email and address and returns false if either is over its
+     * limit. Rejected attempts are not counted, otherwise a blocked client would keep itself
+     * blocked forever. An accepted attempt holds its slot until the outcome is known: a failure
+     * keeps it, {@link #recordSuccess} and {@link #release} give it back.
+     */
+    public boolean tryAcquire(String email, String address) {
+        if (!enabled) {
+            return true;
+        }
+        long now = clock.getAsLong();
+        if (address != null) {
+            if (!acquire(addressWindows, address, maxFailuresPerAddress, now)) {
+                rejectedByAddress.increment();
+                logger.warn("Login from {} rejected, too many failed attempts", address);
+                return false;
+            }
+        }
+        String key = User.normalizeEmail(email);
+        if (key != null && !key.isEmpty()) {
+            if (!acquire(emailWindows, key, maxFailuresPerEmail, now)) {
+                rejectedByEmail.increment();
+                if (address != null) {
+                    giveBack(addressWindows, address, now);
+                }
+                logger.warn("Login for {} rejected, too many failed attempts", key);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the slot taken by tryAcquire already counts the failure
+    public void recordFailure(String email, String address) {
+        if (enabled) {
+            failuresRecorded.increment();
+        }
+    }
+
+    // the email starts over, the address only gets back the slot of this attempt
+    public void recordSuccess(String email, String address) {
+        if (!enabled) {
+            return;
+        }
+        if (address != null) {
+            giveBack(addressWindows, address, clock.getAsLong());
+        }
+        if (email != null) {
+            emailWindows.remove(User.normalizeEmail(email));
+        }
+    }
+
+    // an attempt that ended without checking the password, e.g. rejected as busy
+    public void release(String email, String address) {
+        if (!enabled) {
+            return;
+        }
+        long now = clock.getAsLong();
+        if (address != null) {
+            giveBack(addressWindows, address, now);
+        }
+        String key = User.normalizeEmail(email);
+        if (key != null && !key.isEmpty()) {
+            giveBack(emailWindows, key, now);
+        }
+    }
+
+    public long getRejectedByEmail() {
+        return rejectedByEmail.sum();
+    }
+
+    public long getRejectedByAddress() {
+        return rejectedByAddress.sum();
+    }
+
+    public long getEvicted() {
+        return evicted.sum();
+    }
+
+    public long getFailuresRecorded() {
+        return failuresRecorded.sum();
+    }
+
+    public int getTrackedEmails() {
+        return emailWindows.size();
+    }
+
+    public int getTrackedAddresses() {
+        return addressWindows.size();
+    }
+
+    private boolean acquire(ConcurrentMap<String, AtomicLong> windows, String key, int limit, long now) {
+        AtomicLong window = windows.get(key);
+        if (window == null) {
+            if (windows.size() >= maxEntries) {
+                sweep(windows, now);
+            }
+            window = windows.computeIfAbsent(key, k -> new AtomicLong());
+        }
+        long index = now / windowMillis;
+        double overlap = overlap(now);
+        long current;
+        long next;
+        do {
+            current = window.get();
+            next = advance(current, index);
+            if (estimate(next, overlap) >= limit) {
+                return false;
+            }
+            if ((next & COUNT_MASK) < COUNT_MASK) {
+                next++;
+            }
+        } while (!window.compareAndSet(current, next));
+        return true;
+    }
+
+    // takes one attempt back from the current window, or from the previous one after a rollover
+    private void giveBack(ConcurrentMap<String, AtomicLong> windows, String key, long now) {
+        AtomicLong window = windows.get(key);
+        if (window == null) {
+            return;
+        }
+        long index = now / windowMillis;
+        long current;
+        long next;
+        do {
+            current = window.get();
+            next = advance(current, index);
+            if ((next & COUNT_MASK) > 0) {
+                next--;
+            } else if (((next >>> 16) & COUNT_MASK) > 0) {
+                next -= PREVIOUS_ONE;
+            } else {
+                return;
+            }
+        } while (!window.compareAndSet(current, next));
+    }
+
+    // how much of the previous window still overlaps the sliding window ending now
+    private double overlap(long now) {
+        return 1.0 - (double) (now % windowMillis) / windowMillis;
+    }
+
+    // sliding window estimate: the previous window's count weighted by its overlap plus the current count
+    private static double estimate(long state, double overlap) {
+        long previous = (state >>> 16) & COUNT_MASK;
+        long current = state & COUNT_MASK;
+        return previous * overlap + current;
+    }
+
+    // state layout: window index (high 32 bits) | previous count (16 bits) | current count (16 bits)
+    private static long advance(long state, long index) {
+        long stateIndex = state >>> 32;
+        if (stateIndex == index) {
+            return state;
+        }
+        long previous = stateIndex + 1 == index ? state & COUNT_MASK : 0;
+        return (index << 32) | (previous << 16);
+    }
+
+    // Serialized per map: a thread that arrives while another sweeps waits for it and then finds
+    // the room it made. Expired windows count nothing and go first; windows not touched in the
+    // current window only carry a decaying share of the previous one and go next. If that is not
+    // enough, the windows with the lowest estimates go, the ones a spray of new keys fills up.
+    private void sweep(ConcurrentMap<String, AtomicLong> windows, long now) {
+        synchronized (windows) {
+            if (windows.size() < maxEntries) {
+                return;
+            }
+            long index = now / windowMillis;
+            int target = (int) (maxEntries * SWEEP_TARGET);
+            int before = windows.size();
+            windows.values().removeIf(window -> (window.get() >>> 32) + 1 < index);
+            if (windows.size() > target) {
+                windows.values().removeIf(window -> (window.get() >>> 32) < index);
+            }
+            if (windows.size() > target) {
+                evictLeastAttempted(windows, index, overlap(now), windows.size() - target);
+            }
+            int removed = before - windows.size();
+            evicted.add(removed);
+            logger.debug("Swept {} login limiter entries", removed);
+        }
+    }
+
+    private static void evictLeastAttempted(ConcurrentMap<String, AtomicLong> windows, long index,
+                                            double overlap, int excess) {
+        double[] estimates = windows.values().stream()
+                .mapToDouble(window -> estimate(advance(window.get(), index), overlap))
+                .sorted()
+                .toArray();
+        double threshold = estimates[Math.min(excess, estimates.length) - 1];
+        int toRemove = excess;
+        Iterator<AtomicLong> it = windows.values().iterator();
+        while (it.hasNext() && toRemove > 0) {
+            if (estimate(advance(it.next().get(), index), overlap) <= threshold) {
+                it.remove();
+                toRemove--;
+            }
+        }
+    }
+}
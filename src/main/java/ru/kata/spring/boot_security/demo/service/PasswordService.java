@@ -1,58 +1,313 @@
 package ru.kata.spring.boot_security.demo.service;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
 
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
+/**
+ * Password hashing behind a bounded thread pool.
+ * <p>
+ * Callers of the synchronous API (form login, registration, admin edits) still block until their hash is
+ * done; the pool only caps how many hashes run at once and how many may wait. A full queue or a wait longer
+ * than {@code wait-timeout} fails fast with {@link PasswordHashingBusyException}, which the web layer turns
+ * into a 503 with {@code Retry-After}, instead of letting request threads pile up behind bcrypt. A task whose
+ * caller timed out is skipped when it reaches a thread. {@link #encodePasswordAsync} and
+ * {@link #matchesAsync} hand out the pool's futures for callers that do not need to wait.
+ * <p>
+ * Bulk hashing ({@link #encodeAll}: imports, the password migration, seeding) runs on a second, smaller pool,
+ * half the cores unless {@code bulk-pool-size} says otherwise, so a large import neither fills the
+ * request-facing queue nor takes every core away from logins.
+ */
 @Service
 public class PasswordService {
 
-    private final PasswordEncoder passwordEncoder;
-    private final Map<String, String> defaultPasswordsCache;
-
-    public PasswordService() {
-        this.passwordEncoder = new BCryptPasswordEncoder(12);
-        this.defaultPasswordsCache = new ConcurrentHashMap<>();
-        initializeDefaultPasswords();
-    }
+    private static final Logger logger = LoggerFactory.getLogger(PasswordService.class);
 
-    private void initializeDefaultPasswords() {
-        defaultPasswordsCache.put("admin", passwordEncoder.encode("admin"));
-        defaultPasswordsCache.put("user", passwordEncoder.encode("user"));
-        defaultPasswordsCache.put("test", passwordEncoder.encode("test"));
-    }
+    private static final int MIN_BCRYPT_STRENGTH = 10;
+    private static final int MAX_BCRYPT_STRENGTH = 16;
+    private static final Pattern LEGACY_BCRYPT = Pattern.compile("^\\$2[aby]?\\$\\d\\d\\$.{53}$");
 
-    public String getDefaultPasswordHash(String plainPassword) {
-        return defaultPasswordsCache.get(plainPassword);
-    }
+    private final DelegatingPasswordEncoder encoderChain;
+    private final Map<String, PasswordEncoder> encoders;
+    private final String encoderId;
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor hashingExecutor;
+    private final ThreadPoolExecutor bulkExecutor;
+    private final Duration waitTimeout;
+    private final int bcryptStrength;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Semaphore hashingPermits;
 
-    public boolean isDefaultPassword(String plainPassword) {
-        return defaultPasswordsCache.containsKey(plainPassword);
+    @Autowired
+    public PasswordService(MeterRegistry meterRegistry,
+                           @Value("${app.security.password.bcrypt-strength:12}") int bcryptStrength,
+                           @Value("${app.security.password.target-hash-time:0ms}") Duration targetHashTime,
+                           @Value("${app.security.password.pool-size:0}") int poolSize,
+                           @Value("${app.security.password.queue-capacity:64}") int queueCapacity,
+                           @Value("${app.security.password.bulk-pool-size:0}") int bulkPoolSize,
+                           @Value("${app.security.password.wait-timeout:PT10S}") Duration waitTimeout,
+                           @Value("${app.security.password.encoder:bcrypt}") String encoderId,
+                           @Value("${app.security.password.pbkdf2.iterations:310000}") int pbkdf2Iterations,
+                           @Value("${app.security.password.pbkdf2.hash-width:256}") int pbkdf2HashWidth,
+                           @Value("${app.security.password.argon2.memory:19456}") int argon2Memory,
+                           @Value("${app.security.password.argon2.iterations:2}") int argon2Iterations,
+                           @Value("${app.security.password.argon2.parallelism:1}") int argon2Parallelism,
+                           @Value("${app.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.bcryptStrength = targetHashTime.isZero()
+                ? bcryptStrength
+                : calibrateStrength(targetHashTime);
+        this.encoders = createEncoders(this.bcryptStrength, pbkdf2Iterations, pbkdf2HashWidth,
+                argon2Memory, argon2Iterations, argon2Parallelism);
+        if (!encoders.containsKey(encoderId)) {
+            throw new IllegalArgumentException("Unknown password encoder: " + encoderId
+                    + ", expected one of " + encoders.keySet());
+        }
+        this.encoderId = encoderId;
+        this.encoderChain = new DelegatingPasswordEncoder(encoderId, encoders);
+        // hashes stored before the chain was introduced carry no {id} prefix
+        this.encoderChain.setDefaultPasswordEncoderForMatches(encoders.get("bcrypt"));
+        this.hashingExecutor = createHashingExecutor("password-hash-",
+                poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors(),
+                new ArrayBlockingQueue<>(queueCapacity));
+        // bulk callers wait for their whole batch, so the queue only ever holds batches in progress
+        this.bulkExecutor = createHashingExecutor("password-bulk-",
+                bulkPoolSize > 0 ? bulkPoolSize : Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+                new LinkedBlockingQueue<>());
+        this.waitTimeout = waitTimeout;
+        // With virtual threads callers are cheap and plentiful: hash on the caller's thread behind a
+        // semaphore instead of handing off to the pool, and leave a core free for everything else.
+        int permits = poolSize > 0 ? poolSize : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        this.hashingPermits = virtualThreads ? new Semaphore(permits, true) : null;
+        this.passwordEncoder = new PooledPasswordEncoder();
+        this.encodeTimer = hashTimer(meterRegistry, "encode");
+        this.matchesTimer = hashTimer(meterRegistry, "matches");
+        Gauge.builder("app.password.pool.queued", hashingExecutor, e -> e.getQueue().size())
+                .description("Password hashing tasks waiting for a thread")
+                .register(meterRegistry);
+        Gauge.builder("app.password.pool.active", hashingExecutor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+        Gauge.builder("app.password.bulk.active", bulkExecutor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+        logger.info("Password hashing configured: encoder={}, bcrypt strength={}, pool size={}, queue capacity={}, "
+                        + "bulk pool size={}, caller-thread permits={}", encoderId, this.bcryptStrength,
+                hashingExecutor.getMaximumPoolSize(), queueCapacity, bulkExecutor.getMaximumPoolSize(),
+                hashingPermits == null ? "off" : hashingPermits.availablePermits());
     }
 
     public String encodePassword(String rawPassword) {
         if (rawPassword == null || rawPassword.trim().isEmpty()) {
             throw new IllegalArgumentException("Password cannot be null or empty");
         }
-        String trimmed = rawPassword.trim();
-        if (isDefaultPassword(trimmed)) {
-            return getDefaultPasswordHash(trimmed);
-        }
-        return passwordEncoder.encode(trimmed);
+        return passwordEncoder.encode(rawPassword.trim());
+    }
+
+
+    // blocks until the whole batch is hashed on the bulk pool, results in input order
+    public List<String> encodeAll(List<String> rawPasswords) {
+        List<CompletableFuture<String>> hashes = rawPasswords.stream()
+                .map(raw -> CompletableFuture.supplyAsync(() -> encoderChain.encode(raw.trim()), bulkExecutor))
+                .collect(Collectors.toList());
+        return hashes.stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList());
+    }
+
+    public CompletableFuture<String> encodePasswordAsync(String rawPassword) {
+        return submit(() -> encoderChain.encode(rawPassword));
     }
 
     public boolean matches(String rawPassword, String encodedPassword) {
         return passwordEncoder.matches(rawPassword, encodedPassword);
     }
 
+    public CompletableFuture<Boolean> matchesAsync(String rawPassword, String encodedPassword) {
+        return submit(() -> encoderChain.matches(rawPassword, encodedPassword));
+    }
+
     public boolean isPasswordEncoded(String password) {
-        return password != null && password.startsWith("$2a$");
+        if (password == null) {
+            return false;
+        }
+        int end = password.indexOf('}');
+        if (password.startsWith("{") && end > 0) {
+            return encoders.containsKey(password.substring(1, end));
+        }
+        return LEGACY_BCRYPT.matcher(password).matches();
+    }
+
+    public boolean needsUpgrade(String encodedPassword) {
+        return isPasswordEncoded(encodedPassword) && encoderChain.upgradeEncoding(encodedPassword);
+    }
+
+    public String getEncoderId() {
+        return encoderId;
     }
 
     public PasswordEncoder getPasswordEncoder() {
         return passwordEncoder;
     }
+
+    public int getBcryptStrength() {
+        return bcryptStrength;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashingExecutor.shutdown();
+        bulkExecutor.shutdown();
+    }
+
+    // package-private so tests can occupy the pool deterministically
+    <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, hashingExecutor);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Password hashing queue is full ({} tasks waiting)", hashingExecutor.getQueue().size());
+            throw new PasswordHashingBusyException("Password hashing capacity exhausted, retry later");
+        }
+    }
+
+    private <T> T withPermit(Supplier<T> task) {
+        try {
+            if (!hashingPermits.tryAcquire(waitTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new PasswordHashingBusyException("Password hashing timed out, retry later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to hash password", e);
+        }
+        try {
+            return task.get();
+        } finally {
+            hashingPermits.release();
+        }
+    }
+
+    private <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // completes the future, so a task still queued is skipped instead of hashing for nobody
+            future.cancel(false);
+            throw new PasswordHashingBusyException("Password hashing timed out, retry later");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private static Map<String, PasswordEncoder> createEncoders(int bcryptStrength,
+                                                               int pbkdf2Iterations, int pbkdf2HashWidth,
+                                                               int argon2Memory, int argon2Iterations,
+                                                               int argon2Parallelism) {
+        Pbkdf2PasswordEncoder pbkdf2 = new Pbkdf2PasswordEncoder("", 16, pbkdf2Iterations, pbkdf2HashWidth);
+        pbkdf2.setAlgorithm(Pbkdf2PasswordEncoder.SecretKeyFactoryAlgorithm.PBKDF2WithHmacSHA256);
+
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put("bcrypt", new BCryptPasswordEncoder(bcryptStrength));
+        encoders.put("pbkdf2", pbkdf2);
+        encoders.put("argon2", new Argon2PasswordEncoder(16, 32, argon2Parallelism, argon2Memory, argon2Iterations));
+        return encoders;
+    }
+
+    private static Timer hashTimer(MeterRegistry registry, String operation) {
+        // includes time spent queued for a hashing thread
+        return Timer.builder("app.password.hash")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static ThreadPoolExecutor createHashingExecutor(String threadPrefix, int poolSize,
+                                                            BlockingQueue<Runnable> queue) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                queue,
+                r -> {
+                    Thread t = new Thread(r, threadPrefix + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Each bcrypt cost step doubles the work, so one sample at the minimum
+    // strength is enough to extrapolate the cost that fits the budget.
+    private static int calibrateStrength(Duration targetHashTime) {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(MIN_BCRYPT_STRENGTH);
+        probe.encode("calibration-warmup");
+        long start = System.nanoTime();
+        probe.encode("calibration-sample");
+        long sampleNanos = Math.max(1, System.nanoTime() - start);
+
+        int strength = MIN_BCRYPT_STRENGTH;
+        long estimated = sampleNanos;
+        while (strength < MAX_BCRYPT_STRENGTH && estimated * 2 <= targetHashTime.toNanos()) {
+            estimated *= 2;
+            strength++;
+        }
+        logger.info("Calibrated bcrypt strength {} (~{} ms per hash, target {} ms)",
+                strength, TimeUnit.NANOSECONDS.toMillis(estimated), targetHashTime.toMillis());
+        return strength;
+    }
+
+    private class PooledPasswordEncoder implements PasswordEncoder {
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            if (hashingPermits != null) {
+                return encodeTimer.record(() -> withPermit(() -> encoderChain.encode(rawPassword)));
+            }
+            return encodeTimer.record(() -> await(encodePasswordAsync(rawPassword.toString())));
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            if (hashingPermits != null) {
+                return matchesTimer.record(() -> withPermit(() -> encoderChain.matches(rawPassword, encodedPassword)));
+            }
+            return matchesTimer.record(() -> await(matchesAsync(rawPassword.toString(), encodedPassword)));
+        }
+
+        @Override
+        public boolean upgradeEncoding(String encodedPassword) {
+            return encoderChain.upgradeEncoding(encodedPassword);
+        }
+    }
 }
@@ -0,0 +1,98 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.kata.spring.boot_security.demo.dao.RoleDao;
+import ru.kata.spring.boot_security.demo.dao.RolesChangedEvent;
+import ru.kata.spring.boot_security.demo.model.Role;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable in-memory view of the roles table. It is loaded on first use and
+ * dropped after any committed {@link RoleDao#save}/{@link RoleDao#deleteById}.
+ */
+@Component
+public class RoleRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoleRegistry.class);
+
+    private final RoleDao roleDao;
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public RoleRegistry(RoleDao roleDao) {
+        this.roleDao = roleDao;
+    }
+
+    public Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                long loadedGeneration = generation.get();
+                Snapshot loaded = new Snapshot(roleDao.findAll());
+                // a change committed while loading makes this copy stale already
+                if (loadedGeneration == generation.get()) {
+                    snapshot = loaded;
+                }
+                logger.debug("Loaded role registry with {} roles", loaded.all().size());
+                for (Role role : loaded.all()) {
+                    if (Authority.fromName(role.getName()) == null) {
+                        logger.warn("Role {} has no Authority constant, users holding it are granted nothing",
+                                role.getName());
+                    }
+                }
+                return loaded;
+            }
+            return snapshot;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRolesChanged(RolesChangedEvent event) {
+        generation.incrementAndGet();
+        snapshot = null;
+        logger.debug("Role registry invalidated after change of role {}", event.getRoleId());
+    }
+
+    public static final class Snapshot {
+
+        private final List<Role> all;
+        private final Map<Long, Role> byId;
+        private final Map<String, Role> byName;
+
+        private Snapshot(List<Role> roles) {
+            Map<Long, Role> ids = new HashMap<>();
+            Map<String, Role> names = new HashMap<>();
+            for (Role role : roles) {
+                ids.put(role.getId(), role);
+                names.put(role.getName(), role);
+            }
+            this.all = List.copyOf(roles);
+            this.byId = Map.copyOf(ids);
+            this.byName = Map.copyOf(names);
+        }
+
+        public List<Role> all() {
+            return all;
+        }
+
+        public Role byId(Long id) {
+            return byId.get(id);
+        }
+
+        public Role byName(String name) {
+            return byName.get(name);
+        }
+    }
+}
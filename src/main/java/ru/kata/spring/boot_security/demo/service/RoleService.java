@@ -2,7 +2,9 @@ package ru.kata.spring.boot_security.demo.service;
 
 import ru.kata.spring.boot_security.demo.model.Role;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 public interface RoleService {
 
@@ -11,4 +13,10 @@ public interface RoleService {
     Role getRoleById(Long id);
 
     Role getRoleByName(String name);
+
+    Set<Role> getRolesByIds(Collection<Long> ids);
+
+    void saveRole(Role role);
+
+    void deleteRole(Long id);
 }
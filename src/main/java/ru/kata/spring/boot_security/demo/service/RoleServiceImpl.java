@@ -8,7 +8,10 @@ import org.springframework.transaction.annotation.Transactional;
 import ru.kata.spring.boot_security.demo.dao.RoleDao;
 import ru.kata.spring.boot_security.demo.model.Role;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @Service
 @Transactional(readOnly = true)
@@ -16,16 +19,18 @@ public class RoleServiceImpl implements RoleService {
 
     private static final Logger logger = LoggerFactory.getLogger(RoleServiceImpl.class);
     private final RoleDao roleDao;
+    private final RoleRegistry roleRegistry;
 
     @Autowired
-    public RoleServiceImpl(RoleDao roleDao) {
+    public RoleServiceImpl(RoleDao roleDao, RoleRegistry roleRegistry) {
         this.roleDao = roleDao;
+        this.roleRegistry = roleRegistry;
     }
 
     @Override
     public List<Role> getAllRoles() {
         logger.debug("Getting all roles");
-        List<Role> roles = roleDao.findAll();
+        List<Role> roles = roleRegistry.snapshot().all();
         logger.debug("Retrieved {} roles", roles.size());
         return roles;
     }
@@ -37,7 +42,7 @@ public class RoleServiceImpl implements RoleService {
             logger.warn("Role ID cannot be null");
             return null;
         }
-        Role role = roleDao.findById(id);
+        Role role = roleRegistry.snapshot().byId(id);
         if (role != null) {
             logger.debug("Found role: {}", role.getName());
         } else {
@@ -53,7 +58,7 @@ public class RoleServiceImpl implements RoleService {
             logger.warn("Role name cannot be null or empty");
             return null;
         }
-        Role role = roleDao.findByName(name.trim());
+        Role role = roleRegistry.snapshot().byName(name.trim());
         if (role != null) {
             logger.debug("Found role: {} with id: {}", role.getName(), role.getId());
         } else {
@@ -61,4 +66,44 @@ public class RoleServiceImpl implements RoleService {
         }
         return role;
     }
+
+    @Override
+    public Set<Role> getRolesByIds(Collection<Long> ids) {
+        Set<Role> roles = new HashSet<>();
+        if (ids == null) {
+            return roles;
+        }
+        RoleRegistry.Snapshot snapshot = roleRegistry.snapshot();
+        for (Long id : ids) {
+            Role role = snapshot.byId(id);
+            if (role != null) {
+                roles.add(role);
+            } else {
+                logger.warn("Role not found with id: {}", id);
+            }
+        }
+        return roles;
+    }
+
+    @Override
+    @Transactional
+    public void saveRole(Role role) {
+        if (role == null || role.getName() == null || role.getName().trim().isEmpty()) {
+            logger.error("Cannot save role without name");
+            throw new IllegalArgumentException("Role name must not be null or empty");
+        }
+        roleDao.save(role);
+        logger.info("Saved role: {}", role.getName());
+    }
+
+    @Override
+    @Transactional
+    public void deleteRole(Long id) {
+        if (id == null) {
+            logger.warn("Attempted to delete role with null id");
+            return;
+        }
+        roleDao.deleteById(id);
+        logger.info("Deleted role with id: {}", id);
+    }
 }
@@ -0,0 +1,54 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Principal rebuilt from a verified authentication token, without a session.
+ * {@link #getTokenEpoch()} is checked against the user's current epoch on every request.
+ */
+public final class TokenPrincipal implements AuthenticatedPrincipal, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+    private final long tokenEpoch;
+    private final String email;
+    private final List<String> authorities;
+
+    public TokenPrincipal(Long id, long tokenEpoch, String email, List<String> authorities) {
+        this.id = id;
+        this.tokenEpoch = tokenEpoch;
+        this.email = email;
+        this.authorities = List.copyOf(authorities);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public long getTokenEpoch() {
+        return tokenEpoch;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public List<String> getAuthorities() {
+        return authorities;
+    }
+
+    // AuthenticatedPrincipal#getName is what Authentication#getName reports, keep it the login email
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenPrincipal{id=" + id + ", email='" + email + "', authorities=" + authorities + "}";
+    }
+}
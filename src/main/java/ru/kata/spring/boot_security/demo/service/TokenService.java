@@ -0,0 +1,167 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Issues and verifies compact HMAC-SHA256 signed tokens of the form {@code kid.payload.signature}.
+ * Every configured key verifies tokens, only the active one signs new tokens, which allows
+ * rotating keys by adding the new key first and removing the old one after the token TTL.
+ * <p>
+ * The payload carries the user's token epoch. A valid signature only proves the token was issued;
+ * {@code TokenAuthenticationFilter} also compares the epoch with the user's current one, so deleting a
+ * user, changing their roles, email or password, or logging out revokes the tokens before they expire.
+ */
+@Service
+public class TokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenService.class);
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_SECRET_BYTES = 32;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final boolean enabled;
+    private final Map<String, SecretKeySpec> keys;
+    private final String activeKeyId;
+    private final Duration ttl;
+    private final String cookieName;
+    private final boolean cookieSecure;
+
+    @Autowired
+    public TokenService(@Value("${app.security.token.enabled:false}") boolean enabled,
+                        @Value("${app.security.token.keys:}") String keys,
+                        @Value("${app.security.token.active-key:}") String activeKeyId,
+                        @Value("${app.security.token.ttl:PT8H}") Duration ttl,
+                        @Value("${app.security.token.cookie-name:AUTH_TOKEN}") String cookieName,
+                        @Value("${app.security.token.cookie-secure:false}") boolean cookieSecure) {
+        this.enabled = enabled;
+        this.keys = parseKeys(keys);
+        this.activeKeyId = activeKeyId;
+        this.ttl = ttl;
+        this.cookieName = cookieName;
+        this.cookieSecure = cookieSecure;
+        if (enabled && !this.keys.containsKey(activeKeyId)) {
+            throw new IllegalArgumentException("Token mode is enabled but active key '" + activeKeyId
+                    + "' is not among app.security.token.keys " + this.keys.keySet());
+        }
+        if (enabled) {
+            logger.info("Token authentication enabled: active key {}, {} verification keys, ttl {}",
+                    activeKeyId, this.keys.size(), ttl);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public String getCookieName() {
+        return cookieName;
+    }
+
+    public boolean isCookieSecure() {
+        return cookieSecure;
+    }
+
+    public String issue(Long userId, long tokenEpoch, String email, Collection<String> authorities) {
+        long expiresAt = Instant.now().plus(ttl).getEpochSecond();
+        String payload = userId + "|" + tokenEpoch + "|" + expiresAt + "|" + String.join(",", authorities) + "|" + email;
+        String encodedPayload = ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        String signed = activeKeyId + "." + encodedPayload;
+        return signed + "." + ENCODER.encodeToString(sign(keys.get(activeKeyId), signed));
+    }
+
+    public Optional<TokenPrincipal> verify(String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        int first = token.indexOf('.');
+        int last = token.lastIndexOf('.');
+        if (first <= 0 || last <= first) {
+            return Optional.empty();
+        }
+        SecretKeySpec key = keys.get(token.substring(0, first));
+        if (key == null) {
+            logger.debug("Token signed with unknown key {}", token.substring(0, first));
+            return Optional.empty();
+        }
+        try {
+            byte[] expected = sign(key, token.substring(0, last));
+            byte[] actual = DECODER.decode(token.substring(last + 1));
+            if (!MessageDigest.isEqual(expected, actual)) {
+                logger.debug("Token signature mismatch");
+                return Optional.empty();
+            }
+            String payload = new String(DECODER.decode(token.substring(first + 1, last)), StandardCharsets.UTF_8);
+            String[] parts = payload.split("\\|", 5);
+            if (parts.length != 5 || Long.parseLong(parts[2]) < Instant.now().getEpochSecond()) {
+                return Optional.empty();
+            }
+            List<String> authorities = parts[3].isEmpty()
+                    ? List.of()
+                    : Arrays.asList(parts[3].split(","));
+            return Optional.of(new TokenPrincipal(Long.valueOf(parts[0]), Long.parseLong(parts[1]), parts[4],
+                    authorities));
+        } catch (IllegalArgumentException e) {
+            logger.debug("Malformed token: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static byte[] sign(SecretKeySpec key, String data) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot sign token", e);
+        }
+    }
+
+    // format: kid1:secret1,kid2:secret2
+    private static Map<String, SecretKeySpec> parseKeys(String keys) {
+        Map<String, SecretKeySpec> parsed = new HashMap<>();
+        if (keys == null || keys.isBlank()) {
+            return parsed;
+        }
+        for (String entry : keys.split(",")) {
+            int separator = entry.indexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Token key must be in kid:secret form");
+            }
+            String kid = entry.substring(0, separator).trim();
+            byte[] secret = entry.substring(separator + 1).trim().getBytes(StandardCharsets.UTF_8);
+            if (kid.contains(".") || secret.length < MIN_SECRET_BYTES) {
+                throw new IllegalArgumentException("Token key " + kid
+                        + " must have a dot-free id and a secret of at least " + MIN_SECRET_BYTES + " bytes");
+            }
+            parsed.put(kid, new SecretKeySpec(secret, ALGORITHM));
+        }
+        return parsed.entrySet().stream()
+                .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+}
@@ -0,0 +1,258 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, TTL-based cache of authentication principals keyed by normalized email.
+ * Entries are evicted in LRU order once {@code maxSize} is reached and expire after {@code ttl}.
+ * <p>
+ * The key space is split into independently locked stripes, each an access-ordered map holding its
+ * share of {@code maxSize}, so concurrent logins for different emails rarely wait on each other.
+ * An id to email index lets {@link #evictById(Long)} drop an entry without scanning.
+ * <p>
+ * Every eviction bumps a generation counter. A loader takes {@link #generation()} before reading
+ * the user and passes it to {@link #put(User, long)}, which drops the entry if any eviction happened
+ * in between, so a row read before a change committed is never cached after it.
+ */
+@Component
+public class UserDetailsCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserDetailsCache.class);
+
+    private static final int MAX_STRIPES = 16;
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Stripe[] stripes;
+    private final Map<Long, String> emailsById = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong generation = new AtomicLong();
+
+    public UserDetailsCache(@Value("${app.security.user-cache.max-size:10000}") int maxSize,
+                            @Value("${app.security.user-cache.ttl:PT5M}") Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        int stripeCount = Math.max(1, Math.min(MAX_STRIPES, maxSize));
+        int stripeSize = Math.max(1, (maxSize + stripeCount - 1) / stripeCount);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(stripeSize);
+        }
+        logger.info("User details cache configured: maxSize={}, ttl={}, stripes={}", maxSize, ttl, stripeCount);
+    }
+
+    public static String normalize(String email) {
+        return User.normalizeEmail(email);
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0 && ttlNanos > 0;
+    }
+
+    public User get(String email) {
+        if (!isEnabled() || email == null) {
+            return null;
+        }
+        String key = normalize(email);
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Entry entry = stripe.entries.get(key);
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            if (System.nanoTime() - entry.loadedAt > ttlNanos) {
+                stripe.remove(key);
+                evictions.incrementAndGet();
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.user;
+        }
+    }
+
+    // taken before the database read that produces the user passed to put(User, long)
+    public long generation() {
+        return generation.get();
+    }
+
+    // unconditional, for tests
+    void put(User user) {
+        put(user, generation());
+    }
+
+    public void put(User user, long loadedAt) {
+        if (!isEnabled() || user == null || user.getEmail() == null) {
+            return;
+        }
+        String key = normalize(user.getEmail());
+        Stripe stripe = stripeFor(key);
+        String previous = null;
+        synchronized (stripe) {
+            if (generation.get() != loadedAt) {
+                return;
+            }
+            stripe.entries.put(key, new Entry(user, System.nanoTime()));
+            if (user.getId() != null) {
+                previous = emailsById.put(user.getId(), key);
+            }
+            // an evictById that ran before the index entry existed could not find this entry
+            if (generation.get() != loadedAt) {
+                stripe.remove(key);
+                return;
+            }
+        }
+        // the id was cached under an email it no longer has; removed outside the
+        // stripe lock so two stripes are never held at once
+        if (previous != null && !previous.equals(key)) {
+            removeNow(previous);
+        }
+    }
+
+    public void evict(String email) {
+        if (email == null) {
+            return;
+        }
+        String key = normalize(email);
+        invalidate(() -> removeNow(key));
+    }
+
+    public void evictById(Long id) {
+        if (id == null) {
+            return;
+        }
+        invalidate(() -> removeByIdNow(id));
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.entries.clear();
+            }
+        }
+        emailsById.clear();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    private Stripe stripeFor(String key) {
+        int h = key.hashCode();
+        return stripes[((h ^ (h >>> 16)) & 0x7fffffff) % stripes.length];
+    }
+
+    private void removeNow(String key) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            stripe.remove(key);
+        }
+    }
+
+    private void removeByIdNow(Long id) {
+        String key = emailsById.get(id);
+        if (key != null) {
+            removeNow(key);
+        }
+    }
+
+    // A login racing with an uncommitted change could re-cache the old row, so entries are dropped
+    // again once the transaction has committed, and the generation is bumped both times so loads
+    // that started before the commit are not cached afterwards.
+    private void invalidate(Runnable remove) {
+        generation.incrementAndGet();
+        remove.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    generation.incrementAndGet();
+                    remove.run();
+                }
+            });
+        }
+    }
+
+    // Guarded by its own monitor. Removing an entry also drops its id from the index,
+    // unless the id has been re-cached under another email in the meantime.
+    private final class Stripe {
+        private final Map<String, Entry> entries;
+
+        private Stripe(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    if (size() > capacity) {
+                        unindex(eldest.getKey(), eldest.getValue());
+                        evictions.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        private void remove(String key) {
+            Entry removed = entries.remove(key);
+            if (removed != null) {
+                unindex(key, removed);
+            }
+        }
+
+        private void unindex(String key, Entry entry) {
+            Long id = entry.user.getId();
+            if (id != null) {
+                emailsById.remove(id, key);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final User user;
+        private final long loadedAt;
+
+        private Entry(User user, long loadedAt) {
+            this.user = user;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
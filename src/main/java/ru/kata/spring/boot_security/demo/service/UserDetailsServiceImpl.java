@@ -1,15 +1,16 @@
 package ru.kata.spring.boot_security.demo.service;
 
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Service;
 import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
 
 import java.util.stream.Collectors;
 
@@ -17,20 +18,31 @@ import java.util.stream.Collectors;
 public class UserDetailsServiceImpl implements UserDetailsService {
 
     private final UserService userService;
+    private final UserDetailsCache userDetailsCache;
     private static final Logger logger = LoggerFactory.getLogger(UserDetailsServiceImpl.class);
 
     @Autowired
-    public UserDetailsServiceImpl(UserService userService) {
+    public UserDetailsServiceImpl(UserService userService, UserDetailsCache userDetailsCache) {
         this.userService = userService;
+        this.userDetailsCache = userDetailsCache;
     }
 
     @Override
+    @Timed(value = "app.auth.load-user", histogram = true)
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        logger.info("Attempting to load user by email: {}", email);
+        logger.debug("Attempting to load user by email: {}", email);
 
-        return userService.findByEmailWithRoles(email)
+        User cached = userDetailsCache.get(email);
+        if (cached != null) {
+            logger.debug("User details cache hit for email: {}", email);
+            return cached;
+        }
+        long generation = userDetailsCache.generation();
+        User user = userService.findByEmailWithRoles(email)
                 .orElseThrow(() ->
                         new UsernameNotFoundException("User not found with email: " + email)
                 );
+        userDetailsCache.put(user, generation);
+        return user;
     }
 }
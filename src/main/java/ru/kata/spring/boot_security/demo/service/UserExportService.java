@@ -0,0 +1,97 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.kata.spring.boot_security.demo.dao.UserDao;
+import ru.kata.spring.boot_security.demo.dto.UserSummary;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+@Service
+@Transactional(readOnly = true)
+public class UserExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserExportService.class);
+
+    private final UserDao userDao;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    @Autowired
+    public UserExportService(UserDao userDao, ObjectMapper objectMapper,
+                             @Value("${app.admin.export.fetch-size:1000}") int fetchSize) {
+        // the PostgreSQL driver reads the whole result into memory when the fetch size is 0
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("app.admin.export.fetch-size must be at least 1, got " + fetchSize);
+        }
+        this.userDao = userDao;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+    }
+
+    public long writeCsv(Writer out) throws IOException {
+        out.write("id,name,age,email,roles\n");
+        long count = stream(user -> {
+            out.write(String.valueOf(user.getId()));
+            out.write(',');
+            out.write(csv(user.getName()));
+            out.write(',');
+            out.write(String.valueOf(user.getAge()));
+            out.write(',');
+            out.write(csv(user.getEmail()));
+            out.write(',');
+            out.write(csv(String.join(";", user.getRoles())));
+            out.write('\n');
+        });
+        out.flush();
+        logger.info("Exported {} users as CSV", count);
+        return count;
+    }
+
+    public long writeNdjson(Writer out) throws IOException {
+        long count = stream(user -> {
+            out.write(objectMapper.writeValueAsString(user));
+            out.write('\n');
+        });
+        out.flush();
+        logger.info("Exported {} users as NDJSON", count);
+        return count;
+    }
+
+    private long stream(RowWriter writer) throws IOException {
+        try {
+            return userDao.streamAllWithRoles(fetchSize, user -> {
+                try {
+                    writer.write(user);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+                && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(UserSummary user) throws IOException;
+    }
+}
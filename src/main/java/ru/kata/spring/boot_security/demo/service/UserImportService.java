@@ -0,0 +1,325 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.demo.dao.UserDao;
+import ru.kata.spring.boot_security.demo.dto.ImportReport;
+import ru.kata.spring.boot_security.demo.dto.UserImportRow;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+@Service
+public class UserImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserImportService.class);
+    private static final String DEFAULT_ROLE = "ROLE_USER";
+
+    private final UserDao userDao;
+    private final RoleService roleService;
+    private final PasswordService passwordService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final int batchSize;
+
+    // one import at a time, so the progress counters always describe the running one
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicInteger progressTotal = new AtomicInteger();
+    private final AtomicInteger progressProcessed = new AtomicInteger();
+
+    @Autowired
+    public UserImportService(UserDao userDao,
+                             RoleService roleService,
+                             PasswordService passwordService,
+                             ObjectMapper objectMapper,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${app.admin.import.chunk-size:1000}") int chunkSize,
+                             @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize) {
+        this.userDao = userDao;
+        this.roleService = roleService;
+        this.passwordService = passwordService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.batchSize = batchSize;
+    }
+
+    public ImportReport importCsv(Reader reader) throws IOException {
+        return importRows(parseCsv(reader));
+    }
+
+    public ImportReport importJson(InputStream in) throws IOException {
+        List<UserImportRow> rows = objectMapper.readValue(in, new TypeReference<List<UserImportRow>>() {
+        });
+        for (int i = 0; i < rows.size(); i++) {
+            // a null array element still gets a line number and is rejected by validation
+            if (rows.get(i) == null) {
+                rows.set(i, new UserImportRow());
+            }
+            rows.get(i).setLine(i + 1);
+        }
+        return importRows(rows);
+    }
+
+    public int getProgressTotal() {
+        return progressTotal.get();
+    }
+
+    public int getProgressProcessed() {
+        return progressProcessed.get();
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    private ImportReport importRows(List<UserImportRow> rows) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Another user import is already running, try again when it has finished");
+        }
+        try {
+            return doImportRows(rows);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private ImportReport doImportRows(List<UserImportRow> rows) {
+        long start = System.nanoTime();
+        ImportReport report = new ImportReport(rows.size());
+        progressTotal.set(rows.size());
+        progressProcessed.set(0);
+
+        Map<String, Role> rolesByName = roleService.getAllRoles().stream()
+                .collect(Collectors.toMap(Role::getName, r -> r));
+        List<UserImportRow> valid = validate(rows, rolesByName, report);
+
+        Set<String> existing = userDao.findExistingEmails(
+                valid.stream().map(UserImportRow::getEmail).collect(Collectors.toList()));
+        List<UserImportRow> fresh = new ArrayList<>(valid.size());
+        for (UserImportRow row : valid) {
+            if (existing.contains(row.getEmail())) {
+                report.addError(row.getLine(), row.getEmail(), "User with email " + row.getEmail() + " already exists");
+            } else {
+                fresh.add(row);
+            }
+        }
+        progressProcessed.addAndGet(rows.size() - fresh.size());
+
+        for (int from = 0; from < fresh.size(); from += chunkSize) {
+            List<UserImportRow> chunk = fresh.subList(from, Math.min(from + chunkSize, fresh.size()));
+            importChunk(chunk, rolesByName, report);
+            progressProcessed.addAndGet(chunk.size());
+            logger.info("User import progress: {}/{} rows processed, {} imported",
+                    progressProcessed.get(), rows.size(), report.getImported());
+        }
+
+        report.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        logger.info("User import finished: {} of {} rows imported, {} failed in {} ms",
+                report.getImported(), report.getTotal(), report.getFailed(), report.getElapsedMillis());
+        return report;
+    }
+
+    private void importChunk(List<UserImportRow> chunk, Map<String, Role> rolesByName, ImportReport report) {
+        List<String> hashes = passwordService.encodeAll(
+                chunk.stream().map(UserImportRow::getPassword).collect(Collectors.toList()));
+        List<User> users = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            users.add(toUser(chunk.get(i), hashes.get(i), rolesByName));
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> userDao.saveAll(users, batchSize));
+            report.addImported(users.size());
+        } catch (RuntimeException e) {
+            logger.warn("Chunk of {} users starting at line {} rolled back, retrying row by row: {}",
+                    chunk.size(), chunk.get(0).getLine(), e.getMessage());
+            importRowByRow(chunk, hashes, rolesByName, report);
+        }
+    }
+
+    // Slow path, only taken when a batch fails (e.g. an email registered since the pre-check):
+    // one transaction per row so the offending rows are reported and the rest still go in.
+    // The hashes are reused, the entities are rebuilt because the rolled-back ones carry ids.
+    private void importRowByRow(List<UserImportRow> chunk, List<String> hashes, Map<String, Role> rolesByName,
+                                ImportReport report) {
+        for (int i = 0; i < chunk.size(); i++) {
+            UserImportRow row = chunk.get(i);
+            User user = toUser(row, hashes.get(i), rolesByName);
+            try {
+                transactionTemplate.executeWithoutResult(status -> userDao.save(user));
+                report.addImported(1);
+            } catch (RuntimeException e) {
+                String message = DuplicateEmailException.isEmailConstraintViolation(e)
+                        ? "User with email " + row.getEmail() + " already exists"
+                        : "Insert failed: " + mostSpecificMessage(e);
+                report.addError(row.getLine(), row.getEmail(), message);
+            }
+        }
+    }
+
+    private static User toUser(UserImportRow row, String hash, Map<String, Role> rolesByName) {
+        User user = new User(row.getName().trim(), row.getAge(), row.getEmail(), hash);
+        user.setRoles(row.getRoles().stream().map(rolesByName::get).collect(Collectors.toSet()));
+        return user;
+    }
+
+    private static String mostSpecificMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
+    }
+
+    private List<UserImportRow> validate(List<UserImportRow> rows, Map<String, Role> rolesByName,
+                                         ImportReport report) {
+        List<UserImportRow> valid = new ArrayList<>(rows.size());
+        Set<String> seen = new HashSet<>();
+        for (UserImportRow row : rows) {
+            String error = validateRow(row, rolesByName);
+            if (error == null && !seen.add(row.getEmail())) {
+                error = "Duplicate email in file";
+            }
+            if (error != null) {
+                report.addError(row.getLine(), row.getEmail(), error);
+            } else {
+                valid.add(row);
+            }
+        }
+        return valid;
+    }
+
+    private String validateRow(UserImportRow row, Map<String, Role> rolesByName) {
+        if (row.getEmail() == null || row.getEmail().trim().isEmpty() || !row.getEmail().contains("@")) {
+            return "Email is missing or invalid";
+        }
+        row.setEmail(User.normalizeEmail(row.getEmail()));
+        if (row.getName() == null || row.getName().trim().isEmpty()) {
+            return "Name is required";
+        }
+        if (row.getAge() == null || row.getAge() < 1 || row.getAge() > 150) {
+            return "Age must be between 1 and 150";
+        }
+        if (row.getPassword() == null || row.getPassword().trim().isEmpty()) {
+            return "Password is required";
+        }
+        List<String> roles = new ArrayList<>(row.getRoles().size());
+        for (String role : row.getRoles()) {
+            if (role == null || role.isBlank()) {
+                return "Role name must not be empty";
+            }
+            if (!rolesByName.containsKey(role.trim())) {
+                return "Unknown role: " + role;
+            }
+            roles.add(role.trim());
+        }
+        row.setRoles(roles.isEmpty() ? List.of(DEFAULT_ROLE) : roles);
+        return null;
+    }
+
+    // Expected header: name,age,email,password,roles (roles separated by ';')
+    private List<UserImportRow> parseCsv(Reader reader) throws IOException {
+        BufferedReader in = new BufferedReader(reader);
+        String header = in.readLine();
+        if (header == null) {
+            return List.of();
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = splitCsvLine(header.replace("\uFEFF", ""));
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(), i);
+        }
+        for (String required : List.of("name", "age", "email", "password")) {
+            if (!columns.containsKey(required)) {
+                throw new IllegalArgumentException("CSV header is missing column: " + required);
+            }
+        }
+
+        List<UserImportRow> rows = new ArrayList<>();
+        String line;
+        int lineNumber = 1;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> values = splitCsvLine(line);
+            UserImportRow row = new UserImportRow();
+            row.setLine(lineNumber);
+            row.setName(column(values, columns, "name"));
+            row.setEmail(column(values, columns, "email"));
+            row.setPassword(column(values, columns, "password"));
+            String age = column(values, columns, "age");
+            try {
+                row.setAge(age == null ? null : Integer.valueOf(age.trim()));
+            } catch (NumberFormatException e) {
+                row.setAge(null);
+            }
+            String roles = column(values, columns, "roles");
+            if (roles != null && !roles.isBlank()) {
+                row.setRoles(Arrays.stream(roles.split(";"))
+                        .map(String::trim)
+                        .filter(r -> !r.isEmpty())
+                        .collect(Collectors.toList()));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static String column(List<String> values, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        return index == null || index >= values.size() ? null : values.get(index);
+    }
+
+    private static List<String> splitCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values;
+    }
+}
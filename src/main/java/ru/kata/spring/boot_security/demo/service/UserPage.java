@@ -0,0 +1,65 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import ru.kata.spring.boot_security.demo.dao.UserSort;
+
+import java.util.List;
+
+public class UserPage<T> {
+
+    private final List<T> content;
+    private final UserSort sort;
+    private final boolean descending;
+    private final String cursor;
+    private final String nextCursor;
+    private final int size;
+
+    public UserPage(List<T> content, UserSort sort, boolean descending,
+                    String cursor, String nextCursor, int size) {
+        this.content = List.copyOf(content);
+        this.sort = sort;
+        this.descending = descending;
+        this.cursor = cursor;
+        this.nextCursor = nextCursor;
+        this.size = size;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public UserSort getSort() {
+        return sort;
+    }
+
+    public String getSortParam() {
+        return sort.getProperty();
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public String getDirParam() {
+        return descending ? "desc" : "asc";
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean isFirst() {
+        return cursor == null;
+    }
+
+    public boolean isLast() {
+        return nextCursor == null;
+    }
+
+    public int getSize() {
+        return size;
+    }
+}
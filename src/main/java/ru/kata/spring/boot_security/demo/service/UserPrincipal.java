@@ -0,0 +1,75 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.GrantedAuthority;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Immutable principal stored in the security context after form login, instead of the {@link User} entity:
+ * no password hash, no Hibernate collections, roles packed into a bit set.
+ */
+public final class UserPrincipal implements AuthenticatedPrincipal, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+    private final String email;
+    private final String name;
+    private final long authorityBits;
+    private final long tokenEpoch;
+
+    public UserPrincipal(Long id, String email, String name, long authorityBits, long tokenEpoch) {
+        this.id = id;
+        this.email = email;
+        this.name = name;
+        this.authorityBits = authorityBits;
+        this.tokenEpoch = tokenEpoch;
+    }
+
+    public static UserPrincipal from(User user) {
+        return new UserPrincipal(user.getId(), user.getEmail(), user.getName(),
+                Authority.toBits(user.getAuthorities()), user.getTokenEpoch());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getDisplayName() {
+        return name;
+    }
+
+    public long getTokenEpoch() {
+        return tokenEpoch;
+    }
+
+    public long getAuthorityBits() {
+        return authorityBits;
+    }
+
+    public boolean hasAuthority(Authority authority) {
+        return (authorityBits & authority.bit()) != 0;
+    }
+
+    public List<GrantedAuthority> getAuthorities() {
+        return Authority.fromBits(authorityBits);
+    }
+
+    // AuthenticatedPrincipal#getName is what Authentication#getName reports, keep it the login email
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    @Override
+    public String toString() {
+        return "UserPrincipal{id=" + id + ", email='" + email + "', authorities=" + authorityBits + "}";
+    }
+}
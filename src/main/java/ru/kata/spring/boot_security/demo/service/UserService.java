@@ -1,5 +1,7 @@
 package ru.kata.spring.boot_security.demo.service;
 
+import ru.kata.spring.boot_security.demo.dao.UserSort;
+import ru.kata.spring.boot_security.demo.dto.UserSummary;
 import ru.kata.spring.boot_security.demo.model.User;
 
 import java.util.List;
@@ -11,6 +13,10 @@ public interface UserService {
 
     List<User> getAllUsersWithRoles();
 
+    UserPage<UserSummary> getUserSummaryPage(UserSort sort, boolean descending, String after, int size);
+
+    Optional<UserSummary> getUserSummary(Long id);
+
     Optional<User> getUserById(Long id);
 
     Optional<User> getUserByIdWithRoles(Long id);
@@ -26,4 +32,10 @@ public interface UserService {
     Optional<User> findByEmailWithRoles(String email);
 
     boolean existsByEmail(String email);
+
+    boolean upgradePassword(Long id, String currentPassword, String upgradedPassword);
+
+    Optional<Long> getTokenEpoch(Long id);
+
+    void revokeTokens(Long id);
 }
\ No newline at end of file
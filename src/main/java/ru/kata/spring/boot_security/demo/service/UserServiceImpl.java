@@ -3,12 +3,19 @@ package ru.kata.spring.boot_security.demo.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import ru.kata.spring.boot_security.demo.dao.UserDao;
+import ru.kata.spring.boot_security.demo.dao.UserSort;
+import ru.kata.spring.boot_security.demo.dto.UserSummary;
 import ru.kata.spring.boot_security.demo.model.Role;
 import ru.kata.spring.boot_security.demo.model.User;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -21,11 +28,13 @@ public class UserServiceImpl implements UserService {
 
     private final UserDao userDao;
     private final PasswordService passwordService;
+    private final UserDetailsCache userDetailsCache;
 
     @Autowired
-    public UserServiceImpl(UserDao userDao, PasswordService passwordService) {
+    public UserServiceImpl(UserDao userDao, PasswordService passwordService, UserDetailsCache userDetailsCache) {
         this.userDao = userDao;
         this.passwordService = passwordService;
+        this.userDetailsCache = userDetailsCache;
     }
 
     @Override
@@ -34,7 +43,7 @@ public class UserServiceImpl implements UserService {
 
         try {
             List<User> users = userDao.findAll();
-            logger.info("Retrieved {} users without roles", users.size());
+            logger.debug("Retrieved {} users without roles", users.size());
             return users;
         } catch (Exception e) {
             logger.error("Error retrieving all users", e);
@@ -48,7 +57,7 @@ public class UserServiceImpl implements UserService {
 
         try {
             List<User> users = userDao.findAllWithRoles();
-            logger.info("Retrieved {} users with roles", users.size());
+            logger.debug("Retrieved {} users with roles", users.size());
             return users;
         } catch (Exception e) {
             logger.error("Error retrieving all users with roles", e);
@@ -56,6 +65,41 @@ public class UserServiceImpl implements UserService {
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public UserPage<UserSummary> getUserSummaryPage(UserSort sort, boolean descending, String after, int size) {
+        logger.debug("Getting summary page of users sorted by {} after {} with size {}", sort, after, size);
+        String cursor = validCursor(sort, after);
+        List<UserSummary> users = userDao.findSummaryPage(sort, descending, cursor, size + 1);
+        boolean hasNext = users.size() > size;
+        if (hasNext) {
+            users = users.subList(0, size);
+        }
+        String nextCursor = hasNext ? sort.cursorOf(users.get(users.size() - 1)) : null;
+        return new UserPage<>(users, sort, descending, cursor, nextCursor, size);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<UserSummary> getUserSummary(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return userDao.findSummaryById(id);
+    }
+
+    private static String validCursor(UserSort sort, String after) {
+        if (after != null) {
+            try {
+                sort.parseCursor(after);
+            } catch (IllegalArgumentException e) {
+                logger.warn("Ignoring malformed page cursor: {}", after);
+                return null;
+            }
+        }
+        return after;
+    }
+
     @Override
     public Optional<User> getUserById(Long id) {
         logger.debug("Getting user by id: {}", id);
@@ -109,10 +153,15 @@ public class UserServiceImpl implements UserService {
 
         try {
             userDao.save(user);
+            userDetailsCache.evict(user.getEmail());
             logger.debug("User saved with email: {}", user.getEmail());
-        } catch (Exception e) {
+        } catch (DataIntegrityViolationException e) {
+            if (DuplicateEmailException.isEmailConstraintViolation(e)) {
+                logger.warn("User with email {} already exists", user.getEmail());
+                throw new DuplicateEmailException(user.getEmail(), e);
+            }
             logger.error("Error saving user with email: {}", user.getEmail(), e);
-            throw new RuntimeException("Failed to save user", e);
+            throw e;
         }
     }
 
@@ -126,6 +175,7 @@ public class UserServiceImpl implements UserService {
         }
         try {
             userDao.delete(id);
+            userDetailsCache.evictById(id);
             logger.info("Successfully deleted user with id: {}", id);
         } catch (Exception e) {
             logger.error("Error deleting user with id: {}", id, e);
@@ -212,16 +262,76 @@ public class UserServiceImpl implements UserService {
         User existUser = existingUser.get();
         logger.debug("Found existing user: {}", (existUser.getEmail()));
 
+        if (user.getVersion() != null && !user.getVersion().equals(existUser.getVersion())) {
+            logger.warn("User with id {} was modified concurrently (version {}, current {})",
+                    user.getId(), user.getVersion(), existUser.getVersion());
+            throw new ObjectOptimisticLockingFailureException(User.class, user.getId());
+        }
+        String oldEmail = existUser.getEmail();
+        String oldPassword = existUser.getPassword();
+        Set<Role> oldRoles = existUser.getRoles() == null ? Set.of() : new HashSet<>(existUser.getRoles());
+
+        // changes go onto the managed entity: dynamic update writes only the
+        // changed columns and the role set is updated row by row
+        applyFieldChanges(user, existUser);
         handlePasswordUpdate(user, existUser);
         handleRolesUpdate(user, existUser);
+        if (!oldEmail.equals(existUser.getEmail()) || !oldPassword.equals(existUser.getPassword())
+                || !oldRoles.equals(existUser.getRoles())) {
+            // tokens carry the old identity or authorities, make them fail the epoch check
+            existUser.setTokenEpoch(existUser.getTokenEpoch() + 1);
+        }
 
         try {
-            userDao.update(user);
+            userDao.update(existUser);
+            userDetailsCache.evict(oldEmail);
+            userDetailsCache.evict(existUser.getEmail());
             logger.info("Successfully updated user with id: {} and email: {}",
-                    user.getId(), user.getEmail());
-        } catch (Exception e) {
+                    existUser.getId(), existUser.getEmail());
+        } catch (OptimisticLockingFailureException e) {
+            logger.warn("Concurrent update of user with id: {}", user.getId());
+            throw e;
+        } catch (DataIntegrityViolationException e) {
+            if (DuplicateEmailException.isEmailConstraintViolation(e)) {
+                logger.warn("User with email {} already exists", existUser.getEmail());
+                throw new DuplicateEmailException(existUser.getEmail(), e);
+            }
             logger.error("Error updating user with id: {}", user.getId(), e);
-            throw new RuntimeException("Failed to update user", e);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean upgradePassword(Long id, String currentPassword, String upgradedPassword) {
+        if (id == null || currentPassword == null || upgradedPassword == null) {
+            logger.warn("Attempted to upgrade password with missing arguments");
+            return false;
+        }
+        boolean upgraded = userDao.updatePassword(id, currentPassword, upgradedPassword) > 0;
+        if (upgraded) {
+            userDetailsCache.evictById(id);
+            logger.debug("Upgraded password hash for user with id: {}", id);
+        }
+        return upgraded;
+    }
+
+    // Called on every token request. Reads the column, not the entity: the second-level cache is
+    // per node, and a revocation made on another node must not wait for the cached User to expire.
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Optional<Long> getTokenEpoch(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return userDao.findTokenEpoch(id);
+    }
+
+    @Override
+    public void revokeTokens(Long id) {
+        if (id != null && userDao.incrementTokenEpoch(id) > 0) {
+            // a cached principal would hand out tokens with the revoked epoch at the next login
+            userDetailsCache.evictById(id);
+            logger.debug("Revoked authentication tokens of user with id: {}", id);
         }
     }
 
@@ -239,10 +349,6 @@ public class UserServiceImpl implements UserService {
             logger.error("Cannot save user without password");
             throw new IllegalArgumentException("Password must not be null or empty");
         }
-        if (existsByEmail(user.getEmail())) {
-            logger.error("User with email {} already exists", user.getEmail());
-            throw new IllegalArgumentException("User with email " + user.getEmail() + " already exists");
-        }
     }
 
     private void encodeUserPassword(User user) {
@@ -262,16 +368,29 @@ public class UserServiceImpl implements UserService {
         }
     }
 
+    private void applyFieldChanges(User newUser, User existUser) {
+        if (newUser.getName() != null && !newUser.getName().equals(existUser.getName())) {
+            existUser.setName(newUser.getName());
+        }
+        if (newUser.getAge() != existUser.getAge()) {
+            existUser.setAge(newUser.getAge());
+        }
+        if (newUser.getEmail() != null && !newUser.getEmail().trim().isEmpty()
+                && !newUser.getEmail().equals(existUser.getEmail())) {
+            existUser.setEmail(newUser.getEmail());
+        }
+    }
+
     private void handlePasswordUpdate(User newUser, User existUser) {
         String np = newUser.getPassword();
-        if (np == null || np.trim().isEmpty()) {
-            newUser.setPassword(existUser.getPassword());
+        if (np == null || np.trim().isEmpty() || np.equals(existUser.getPassword())) {
             return;
         }
         if (passwordService.isPasswordEncoded(np)) {
+            existUser.setPassword(np);
             return;
         }
-        newUser.setPassword(passwordService.encodePassword(np.trim()));
+        existUser.setPassword(passwordService.encodePassword(np.trim()));
     }
 
     private void handleRolesUpdate(User newUser, User existUser) {
@@ -280,10 +399,17 @@ public class UserServiceImpl implements UserService {
         if (newRoles == null || newRoles.isEmpty()) {
             logger.debug("No roles provided, keeping existing roles for user: {}",
                     existUser.getEmail());
-            newUser.setRoles(existUser.getRoles());
             return;
         }
+        Set<Role> roles = existUser.getRoles();
+        if (roles == null) {
+            existUser.setRoles(new HashSet<>(newRoles));
+            return;
+        }
+        // mutate the persistent set in place so only the changed join rows are written
+        roles.retainAll(newRoles);
+        roles.addAll(newRoles);
         logger.debug("Setting new roles for user: {}. Roles count: {}",
-                existUser.getEmail(), newRoles.size());
+                existUser.getEmail(), roles.size());
     }
 }
\ No newline at end of file
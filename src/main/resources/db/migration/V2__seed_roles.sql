@@ -0,0 +1,2 @@
+INSERT INTO roles (id, name) VALUES (nextval('roles_seq'), 'ROLE_ADMIN');
+INSERT INTO roles (id, name) VALUES (nextval('roles_seq'), 'ROLE_USER');
@@ -0,0 +1,10 @@
+-- progress of long-running data migrations that run inside the application
+CREATE TABLE migration_checkpoint
+(
+    name       VARCHAR(100) NOT NULL,
+    last_id    BIGINT       NOT NULL DEFAULT 0,
+    processed  BIGINT       NOT NULL DEFAULT 0,
+    completed  BOOLEAN      NOT NULL DEFAULT FALSE,
+    updated_at TIMESTAMP    NOT NULL DEFAULT now(),
+    CONSTRAINT migration_checkpoint_pkey PRIMARY KEY (name)
+);
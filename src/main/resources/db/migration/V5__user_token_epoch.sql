@@ -0,0 +1,2 @@
+-- bumped to revoke every signed token issued to the user, see TokenService
+ALTER TABLE users ADD COLUMN token_epoch BIGINT NOT NULL DEFAULT 0;
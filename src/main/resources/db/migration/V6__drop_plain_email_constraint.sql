@@ -0,0 +1,2 @@
+-- emails are stored normalized (User.normalizeEmail), so uk_users_email_lower alone enforces uniqueness
+ALTER TABLE users DROP CONSTRAINT uk_users_email;
@@ -1,13 +1,63 @@
 package ru.kata.spring.boot_security.demo;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.startup.StartupEndpoint;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
 
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// runs with the default configuration, including the JDBC session store on the V4 tables
 @SpringBootTest
 class SpringBootSecurityDemoApplicationTests {
 
+	@Autowired
+	private StartupEndpoint startupEndpoint;
+
+	@Autowired
+	private SessionRepository<Session> sessionRepository;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
 	@Test
 	void contextLoads() {
 	}
+
+	// recorded without going through main()
+	@Test
+	void startupStepsAreRecorded() {
+		assertFalse(startupEndpoint.startupSnapshot().getTimeline().getEvents().isEmpty());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void sessionsRoundTripThroughJdbcStore() {
+		assertTrue(sessionRepository instanceof FindByIndexNameSessionRepository);
+		FindByIndexNameSessionRepository<Session> indexed = (FindByIndexNameSessionRepository<Session>) sessionRepository;
+		String principal = "session-" + UUID.randomUUID() + "@example.com";
+
+		Session session = sessionRepository.createSession();
+		session.setAttribute(FindByIndexNameSessionRepository.PRINCIPAL_NAME_INDEX_NAME, principal);
+		session.setAttribute("greeting", "hello");
+		sessionRepository.save(session);
+
+		assertEquals("hello", sessionRepository.findById(session.getId()).getAttribute("greeting"));
+		assertEquals(1, indexed.findByPrincipalName(principal).size());
+
+		sessionRepository.deleteById(session.getId());
+		assertNull(sessionRepository.findById(session.getId()));
+		assertTrue(indexed.findByPrincipalName(principal).isEmpty());
+		assertEquals(1, meterRegistry.get("app.session.operations")
+				.tags("operation", "save", "store", "jdbc").timer().count());
+	}
 }
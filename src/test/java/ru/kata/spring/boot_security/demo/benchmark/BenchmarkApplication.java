@@ -0,0 +1,43 @@
+package ru.kata.spring.boot_security.demo.benchmark;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.kata.spring.boot_security.demo.SpringBootSecurityDemoApplication;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Starts the full application against {@link BenchmarkDatabase} with SQL echo and debug logging
+ * off, so the benchmarks measure the code rather than the console.
+ */
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(String... extraProperties) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("spring.datasource.url", BenchmarkDatabase.jdbcUrl());
+        properties.put("spring.datasource.username", BenchmarkDatabase.username());
+        properties.put("spring.datasource.password", BenchmarkDatabase.password());
+        properties.put("server.port", "0");
+        properties.put("app.session.store", "memory");
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("spring.jpa.properties.hibernate.format_sql", "false");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.org.springframework.security", "WARN");
+        properties.put("logging.level.org.thymeleaf", "WARN");
+        properties.put("logging.level.ru.kata", "WARN");
+        properties.put("spring.thymeleaf.cache", "true");
+        for (String property : extraProperties) {
+            int eq = property.indexOf('=');
+            properties.put(property.substring(0, eq), property.substring(eq + 1));
+        }
+        // passed as command line arguments so they win over application.properties
+        String[] args = properties.entrySet().stream()
+                .map(e -> "--" + e.getKey() + "=" + e.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(SpringBootSecurityDemoApplication.class).run(args);
+    }
+}
@@ -0,0 +1,55 @@
+package ru.kata.spring.boot_security.demo.benchmark;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Database for the benchmarks: an embedded PostgreSQL started once per JVM, or an existing
+ * scratch database when -Dbenchmark.jdbc-url (plus benchmark.username / benchmark.password) is set.
+ * Benchmarks may replace its users.
+ */
+final class BenchmarkDatabase {
+
+    private static final String EXTERNAL_URL = System.getProperty("benchmark.jdbc-url");
+
+    private static EmbeddedPostgres embedded;
+
+    private BenchmarkDatabase() {
+    }
+
+    static synchronized String jdbcUrl() {
+        if (EXTERNAL_URL != null) {
+            return EXTERNAL_URL;
+        }
+        if (embedded == null) {
+            try {
+                embedded = EmbeddedPostgres.builder().start();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not start embedded PostgreSQL", e);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(BenchmarkDatabase::stop));
+        }
+        return embedded.getJdbcUrl("postgres", "postgres");
+    }
+
+    static String username() {
+        return EXTERNAL_URL != null ? System.getProperty("benchmark.username", "postgres") : "postgres";
+    }
+
+    static String password() {
+        return EXTERNAL_URL != null ? System.getProperty("benchmark.password", "") : "";
+    }
+
+    private static synchronized void stop() {
+        if (embedded != null) {
+            try {
+                embedded.close();
+            } catch (IOException ignored) {
+                // the JVM is exiting anyway
+            }
+            embedded = null;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package ru.kata.spring.boot_security.demo.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.kata.spring.boot_security.demo.service.PasswordService;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Load test: bulk loads synthetic users with {@link UserDataGenerator}, starts the application on a
+ * random port and drives a login / register / admin list / admin edit mix over HTTP from a number
+ * of client threads. Latency percentiles and throughput are printed per operation and written as
+ * JSON.
+ * <p>
+ * {@code mvn -Ploadtest verify -Dloadtest.users=1000000 -Dloadtest.threads=16 -Dloadtest.duration=PT60S}
+ * <p>
+ * {@code -Dloadtest.virtual-threads=true} runs the server in virtual thread mode for comparison.
+ */
+public final class LoadTestHarness {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final Pattern VERSION_FIELD = Pattern.compile("name=\"version\"\\s+value=\"(\\d+)\"");
+
+    enum Operation {
+        LOGIN(20), REGISTER(5), ADMIN_LIST(50), ADMIN_EDIT(25);
+
+        final int weight;
+
+        Operation(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private final URI base;
+    private final long firstId;
+    private final int users;
+    private final HttpClient anonymous = newClient(null);
+    private final AtomicLong registrations = new AtomicLong();
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private volatile boolean running;
+
+    private LoadTestHarness(URI base, long firstId, int users) {
+        this.base = base;
+        this.firstId = firstId;
+        this.users = users;
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new ConcurrentHistogram(MAX_LATENCY_MICROS, 3));
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int users = Integer.getInteger("loadtest.users", 1_000_000);
+        int threads = Integer.getInteger("loadtest.threads", 16);
+        Duration warmup = Duration.parse(System.getProperty("loadtest.warmup", "PT10S"));
+        Duration duration = Duration.parse(System.getProperty("loadtest.duration", "PT60S"));
+        int bcryptStrength = Integer.getInteger("loadtest.bcrypt-strength", 10);
+        boolean virtualThreads = Boolean.getBoolean("loadtest.virtual-threads");
+        File report = new File(System.getProperty("loadtest.report", "target/loadtest-report.json"));
+
+        try (ConfigurableApplicationContext context = BenchmarkApplication.start(
+                "app.security.password.bcrypt-strength=" + bcryptStrength,
+                "app.logging.request.sample-rate=0",
+                "app.threads.virtual.enabled=" + virtualThreads)) {
+            String hash = context.getBean(PasswordService.class).encodePassword(UserDataGenerator.PASSWORD);
+            long started = System.nanoTime();
+            long firstId = new UserDataGenerator(context.getBean(DataSource.class)).generate(users, hash);
+            long loadMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            System.out.printf("Loaded %,d users in %,d ms (%,d rows/s)%n", users, loadMillis, users * 1000L / loadMillis);
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            LoadTestHarness warmupRun = new LoadTestHarness(URI.create("http://localhost:" + port), firstId, users);
+            warmupRun.run(threads, warmup);
+            LoadTestHarness test = new LoadTestHarness(URI.create("http://localhost:" + port), firstId, users);
+            test.run(threads, duration);
+            test.report(users, threads, virtualThreads, duration, report);
+        }
+    }
+
+    private void run(int threads, Duration duration) throws InterruptedException {
+        running = true;
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(new Worker(i), "load-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+        Thread.sleep(duration.toMillis());
+        running = false;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private final class Worker implements Runnable {
+
+        private final SplittableRandom random;
+        private final HttpClient admin = newClient(new CookieManager());
+
+        Worker(int index) {
+            this.random = new SplittableRandom(index);
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!login(admin, "admin@admin.com", "admin")) {
+                    throw new IllegalStateException("Admin login failed");
+                }
+                while (running) {
+                    Operation operation = pick();
+                    long start = System.nanoTime();
+                    boolean ok;
+                    try {
+                        ok = execute(operation);
+                    } catch (Exception e) {
+                        ok = false;
+                    }
+                    long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+                    if (ok) {
+                        latencies.get(operation).recordValue(Math.min(micros, MAX_LATENCY_MICROS));
+                    } else {
+                        errors.get(operation).increment();
+                    }
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private Operation pick() {
+            int roll = random.nextInt(100);
+            for (Operation operation : Operation.values()) {
+                roll -= operation.weight;
+                if (roll < 0) {
+                    return operation;
+                }
+            }
+            return Operation.ADMIN_LIST;
+        }
+
+        private boolean execute(Operation operation) throws Exception {
+            switch (operation) {
+                case LOGIN:
+                    return login(anonymous, UserDataGenerator.email(random.nextInt(users)), UserDataGenerator.PASSWORD);
+                case REGISTER:
+                    return register();
+                case ADMIN_LIST:
+                    return adminList();
+                default:
+                    return adminEdit();
+            }
+        }
+
+        private boolean register() throws Exception {
+            String email = "registered" + registrations.incrementAndGet() + "-" + System.nanoTime()
+                    + "@" + UserDataGenerator.DOMAIN;
+            HttpResponse<Void> response = anonymous.send(post("/register", "name", "Load Test",
+                    "age", "30", "email", email, "password", UserDataGenerator.PASSWORD), HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() == 302
+                    && response.headers().firstValue("Location").orElse("").contains("registered");
+        }
+
+        private boolean adminList() throws Exception {
+            int n = random.nextInt(users);
+            String query = random.nextBoolean()
+                    ? "?sort=id&after=" + (firstId + n)
+                    : "?sort=email&after=" + URLEncoder.encode(UserDataGenerator.email(n), StandardCharsets.UTF_8);
+            HttpResponse<Void> response = admin.send(get("/admin" + query), HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() == 200;
+        }
+
+        private boolean adminEdit() throws Exception {
+            long id = firstId + random.nextInt(users);
+            HttpResponse<String> form = admin.send(get("/admin/" + id + "/edit"), HttpResponse.BodyHandlers.ofString());
+            Matcher version = VERSION_FIELD.matcher(form.body());
+            if (form.statusCode() != 200 || !version.find()) {
+                return false;
+            }
+            HttpResponse<Void> response = admin.send(post("/admin/" + id, "version", version.group(1),
+                    "age", String.valueOf(18 + random.nextInt(60))), HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() == 302;
+        }
+    }
+
+    private boolean login(HttpClient client, String email, String password) throws Exception {
+        HttpResponse<Void> response = client.send(post("/login", "email", email, "password", password),
+                HttpResponse.BodyHandlers.discarding());
+        return response.statusCode() == 302
+                && !response.headers().firstValue("Location").orElse("").contains("error");
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(base.resolve(path)).GET().build();
+    }
+
+    private HttpRequest post(String path, String... params) {
+        StringBuilder form = new StringBuilder();
+        for (int i = 0; i < params.length; i += 2) {
+            if (form.length() > 0) {
+                form.append('&');
+            }
+            form.append(params[i]).append('=').append(URLEncoder.encode(params[i + 1], StandardCharsets.UTF_8));
+        }
+        return HttpRequest.newBuilder(base.resolve(path))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form.toString()))
+                .build();
+    }
+
+    private static HttpClient newClient(CookieManager cookies) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(10));
+        if (cookies != null) {
+            builder.cookieHandler(cookies);
+        }
+        return builder.build();
+    }
+
+    private void report(int users, int threads, boolean virtualThreads, Duration duration, File file)
+            throws Exception {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("users", users);
+        result.put("threads", threads);
+        result.put("virtualThreads", virtualThreads);
+        result.put("durationSeconds", duration.getSeconds());
+        Map<String, Object> operations = new LinkedHashMap<>();
+        System.out.printf("%n%-12s %10s %8s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Operation operation : Operation.values()) {
+            Histogram h = latencies.get(operation);
+            long errorCount = errors.get(operation).sum();
+            double throughput = (double) h.getTotalCount() / duration.getSeconds();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("count", h.getTotalCount());
+            stats.put("errors", errorCount);
+            stats.put("throughput", throughput);
+            stats.put("p50Millis", millis(h.getValueAtPercentile(50)));
+            stats.put("p90Millis", millis(h.getValueAtPercentile(90)));
+            stats.put("p99Millis", millis(h.getValueAtPercentile(99)));
+            stats.put("p999Millis", millis(h.getValueAtPercentile(99.9)));
+            stats.put("maxMillis", millis(h.getMaxValue()));
+            operations.put(operation.name().toLowerCase(), stats);
+            System.out.printf("%-12s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                    operation.name().toLowerCase(), h.getTotalCount(), errorCount, throughput,
+                    stats.get("p50Millis"), stats.get("p90Millis"), stats.get("p99Millis"),
+                    stats.get("p999Millis"), stats.get("maxMillis"));
+        }
+        result.put("operations", operations);
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, result);
+        System.out.println("Report written to " + file.getAbsolutePath());
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,61 @@
+package ru.kata.spring.boot_security.demo.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.kata.spring.boot_security.demo.service.PasswordService;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordServiceBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    // encoder id, with the bcrypt cost after the colon
+    @Param({"bcrypt:10", "bcrypt:12", "bcrypt:14", "pbkdf2", "argon2"})
+    public String cost;
+
+    private PasswordService passwordService;
+    private String encoded;
+
+    @Setup
+    public void setUp() {
+        String[] parts = cost.split(":");
+        int bcryptStrength = parts.length > 1 ? Integer.parseInt(parts[1]) : 10;
+        passwordService = new PasswordService(new SimpleMeterRegistry(), bcryptStrength, Duration.ZERO,
+                1, 64, 1, Duration.ofMinutes(1), parts[0], 310000, 256, 19456, 2, 1, false);
+        encoded = passwordService.encodePassword(PASSWORD);
+    }
+
+    @TearDown
+    public void tearDown() {
+        passwordService.shutdown();
+    }
+
+    @Benchmark
+    public String encodePassword() {
+        return passwordService.encodePassword(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return passwordService.matches(PASSWORD, encoded);
+    }
+}
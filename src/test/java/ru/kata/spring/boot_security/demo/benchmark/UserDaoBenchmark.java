@@ -0,0 +1,83 @@
+package ru.kata.spring.boot_security.demo.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.demo.dao.UserDao;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class UserDaoBenchmark {
+
+    private static final int INSERT_BATCH = 1000;
+
+    @Param({"100", "1000", "10000"})
+    public int users;
+
+    private ConfigurableApplicationContext context;
+    private UserDao userDao;
+    private TransactionTemplate readOnly;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start("app.security.password.bcrypt-strength=4");
+        userDao = context.getBean(UserDao.class);
+        readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+        seedUsers(context.getBean(JdbcTemplate.class), users);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<User> findAllWithRoles() {
+        return readOnly.execute(status -> userDao.findAllWithRoles());
+    }
+
+    // replaces all users with generated ones, every tenth an admin; ids stay clear of the sequence
+    private static void seedUsers(JdbcTemplate jdbc, int count) {
+        jdbc.update("DELETE FROM users");
+        Long userRole = jdbc.queryForObject("SELECT id FROM roles WHERE name = 'ROLE_USER'", Long.class);
+        Long adminRole = jdbc.queryForObject("SELECT id FROM roles WHERE name = 'ROLE_ADMIN'", Long.class);
+        long firstId = 1_000_000_000L;
+        List<Object[]> userRows = new ArrayList<>(INSERT_BATCH);
+        List<Object[]> roleRows = new ArrayList<>(INSERT_BATCH);
+        for (int i = 0; i < count; i++) {
+            long id = firstId + i;
+            userRows.add(new Object[]{id, "User " + i, 20 + i % 50, "bench" + i + "@example.com", "{noop}x"});
+            roleRows.add(new Object[]{id, i % 10 == 0 ? adminRole : userRole});
+            if (userRows.size() == INSERT_BATCH || i == count - 1) {
+                jdbc.batchUpdate("INSERT INTO users (id, name, age, email, password) VALUES (?, ?, ?, ?, ?)",
+                        userRows);
+                jdbc.batchUpdate("INSERT INTO users_roles (user_id, role_id) VALUES (?, ?)", roleRows);
+                userRows.clear();
+                roleRows.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package ru.kata.spring.boot_security.demo.benchmark;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.SplittableRandom;
+
+/**
+ * Bulk loads synthetic users with COPY: 95% plain users, 4% users who are also admins and 1% admins
+ * only. All of them share one pre-computed password hash, so loading millions of rows does not
+ * mean millions of bcrypt rounds. Generated users have emails in the {@value #DOMAIN} domain and
+ * are replaced on every run.
+ */
+final class UserDataGenerator {
+
+    static final String DOMAIN = "load.test";
+    static final String PASSWORD = "password";
+
+    private static final int COPY_BUFFER = 1 << 16;
+    private static final String[] FIRST_NAMES = {"Anna", "Ivan", "Maria", "Pavel", "Olga", "Sergey",
+            "Elena", "Dmitry", "Irina", "Alexey", "Natalia", "Mikhail", "Tatiana", "Andrey", "Yulia"};
+    private static final String[] LAST_NAMES = {"Ivanov", "Smirnov", "Kuznetsov", "Popov", "Vasiliev",
+            "Petrov", "Sokolov", "Mikhailov", "Novikov", "Fedorov", "Morozov", "Volkov", "Lebedev"};
+
+    private final DataSource dataSource;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    UserDataGenerator(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    static String email(long n) {
+        return "user" + n + "@" + DOMAIN;
+    }
+
+    /**
+     * @return id of the first generated user; ids are contiguous
+     */
+    long generate(int count, String passwordHash) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            long userRole;
+            long adminRole;
+            long firstId;
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("DELETE FROM users WHERE email LIKE '%@" + DOMAIN + "'");
+                userRole = queryLong(statement, "SELECT id FROM roles WHERE name = 'ROLE_USER'");
+                adminRole = queryLong(statement, "SELECT id FROM roles WHERE name = 'ROLE_ADMIN'");
+                // the running application may hold a block of up to 50 ids beyond the sequence value
+                firstId = queryLong(statement, "SELECT greatest(coalesce(max(id), 0), "
+                        + "(SELECT last_value FROM users_seq)) + 51 FROM users");
+            }
+
+            CopyManager copy = connection.unwrap(PGConnection.class).getCopyAPI();
+            StringBuilder rows = new StringBuilder(COPY_BUFFER + 256);
+            // 0 = user, 1 = user and admin, 2 = admin only
+            byte[] kinds = new byte[count];
+            CopyIn usersCopy = copy.copyIn("COPY users (id, name, age, email, password, version) FROM STDIN");
+            try {
+                for (int i = 0; i < count; i++) {
+                    rows.append(firstId + i).append('\t')
+                            .append(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]).append(' ')
+                            .append(LAST_NAMES[random.nextInt(LAST_NAMES.length)]).append('\t')
+                            .append(18 + random.nextInt(30) + random.nextInt(30)).append('\t')
+                            .append(email(i)).append('\t')
+                            .append(passwordHash).append('\t')
+                            .append(0).append('\n');
+                    int roll = random.nextInt(100);
+                    kinds[i] = (byte) (roll < 1 ? 2 : roll < 5 ? 1 : 0);
+                    flushIfFull(usersCopy, rows);
+                }
+                write(usersCopy, rows);
+                usersCopy.endCopy();
+            } finally {
+                if (usersCopy.isActive()) {
+                    usersCopy.cancelCopy();
+                }
+            }
+
+            CopyIn rolesCopy = copy.copyIn("COPY users_roles (user_id, role_id) FROM STDIN");
+            try {
+                for (int i = 0; i < count; i++) {
+                    long id = firstId + i;
+                    if (kinds[i] != 2) {
+                        rows.append(id).append('\t').append(userRole).append('\n');
+                    }
+                    if (kinds[i] != 0) {
+                        rows.append(id).append('\t').append(adminRole).append('\n');
+                    }
+                    flushIfFull(rolesCopy, rows);
+                }
+                write(rolesCopy, rows);
+                rolesCopy.endCopy();
+            } finally {
+                if (rolesCopy.isActive()) {
+                    rolesCopy.cancelCopy();
+                }
+            }
+
+            try (Statement statement = connection.createStatement()) {
+                // keep the pooled id generator (increment 50) clear of the generated ids
+                statement.execute("SELECT setval('users_seq', " + (firstId + count + 50) + ")");
+            }
+            connection.commit();
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ANALYZE users");
+                statement.execute("ANALYZE users_roles");
+            }
+            return firstId;
+        }
+    }
+
+    private static long queryLong(Statement statement, String sql) throws SQLException {
+        try (ResultSet rs = statement.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static void flushIfFull(CopyIn copyIn, StringBuilder rows) throws SQLException {
+        if (rows.length() >= COPY_BUFFER) {
+            write(copyIn, rows);
+        }
+    }
+
+    private static void write(CopyIn copyIn, StringBuilder rows) throws SQLException {
+        byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        rows.setLength(0);
+    }
+}
@@ -0,0 +1,83 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.RoleService;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "app.session.store=memory")
+class ScraperSecurityTest {
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private RoleService roleService;
+
+    private MockMvc mvc;
+    private User admin;
+
+    @BeforeEach
+    void setUp() {
+        mvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+        admin = new User("Scraper", 30, "scraper-" + UUID.randomUUID() + "@example.com", "secret");
+        admin.setRoles(Set.of(roleService.getRoleByName("ROLE_ADMIN")));
+        userService.saveUser(admin);
+    }
+
+    @AfterEach
+    void tearDown() {
+        userService.deleteUser(admin.getId());
+    }
+
+    @Test
+    void scraperAuthenticatesWithBasicWithoutASession() throws Exception {
+        // metrics export is off in tests, so past security the endpoint itself answers 404
+        assertNull(mvc.perform(get("/actuator/prometheus").with(httpBasic(admin.getEmail(), "secret")))
+                .andExpect(status().isNotFound())
+                .andReturn().getRequest().getSession(false));
+
+        mvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isUnauthorized())
+                .andExpect(header().exists("WWW-Authenticate"));
+    }
+
+    @Test
+    void basicCredentialsAreIgnoredEverywhereElse() throws Exception {
+        mvc.perform(get("/api/users").with(httpBasic(admin.getEmail(), "secret")))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void repeatedBadBasicCredentialsAreThrottled() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            mvc.perform(get("/actuator/prometheus").with(httpBasic(admin.getEmail(), "wrong" + i)))
+                    .andExpect(status().isUnauthorized());
+        }
+
+        // over the per-email limit the password is not even checked, right or wrong
+        mvc.perform(get("/actuator/prometheus").with(httpBasic(admin.getEmail(), "secret")))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"));
+    }
+}
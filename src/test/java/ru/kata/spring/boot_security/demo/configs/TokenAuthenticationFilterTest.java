@@ -0,0 +1,80 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import ru.kata.spring.boot_security.demo.service.TokenService;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import javax.servlet.http.Cookie;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TokenAuthenticationFilterTest {
+
+    private final TokenService tokenService = new TokenService(true, "k1:0123456789abcdef0123456789abcdef", "k1",
+            Duration.ofHours(1), "AUTH_TOKEN", false);
+    private final UserService userService = mock(UserService.class);
+    private final TokenAuthenticationFilter filter = new TokenAuthenticationFilter(tokenService, userService);
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private Authentication filterWithToken(long epoch) throws Exception {
+        String token = tokenService.issue(7L, epoch, "bob@example.com", List.of("ROLE_USER"));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/user");
+        request.setCookies(new Cookie("AUTH_TOKEN", token));
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    @Test
+    void currentTokenAuthenticates() throws Exception {
+        when(userService.getTokenEpoch(7L)).thenReturn(Optional.of(2L));
+
+        Authentication authentication = filterWithToken(2);
+
+        assertNotNull(authentication);
+        assertEquals("bob@example.com", authentication.getName());
+        assertEquals("ROLE_USER", authentication.getAuthorities().iterator().next().getAuthority());
+    }
+
+    @Test
+    void revokedTokenIsIgnored() throws Exception {
+        when(userService.getTokenEpoch(7L)).thenReturn(Optional.of(3L));
+
+        assertNull(filterWithToken(2));
+    }
+
+    @Test
+    void tokenOfDeletedUserIsIgnored() throws Exception {
+        when(userService.getTokenEpoch(7L)).thenReturn(Optional.empty());
+
+        assertNull(filterWithToken(2));
+    }
+
+    @Test
+    void bearerHeaderIsAccepted() throws Exception {
+        when(userService.getTokenEpoch(7L)).thenReturn(Optional.of(0L));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users");
+        request.addHeader("Authorization",
+                "Bearer " + tokenService.issue(7L, 0, "bob@example.com", List.of("ROLE_ADMIN")));
+
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        assertEquals("bob@example.com", SecurityContextHolder.getContext().getAuthentication().getName());
+    }
+}
@@ -0,0 +1,148 @@
+package ru.kata.spring.boot_security.demo.controllers;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.RoleService;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "app.session.store=memory")
+class UserApiControllerTest {
+
+    private static final RequestPostProcessor ADMIN = user("admin@example.com").roles("ADMIN");
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private RoleService roleService;
+
+    private MockMvc mvc;
+    private final List<Long> created = new ArrayList<>();
+
+    // built on the shared test context rather than @AutoConfigureMockMvc, which would start another one
+    @BeforeEach
+    void setUp() {
+        mvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        created.forEach(userService::deleteUser);
+    }
+
+    private User create(String prefix) {
+        User user = new User("Api User", 30, prefix + "-" + UUID.randomUUID() + "@example.com", "secret");
+        user.setRoles(Set.of(roleService.getRoleByName("ROLE_USER")));
+        userService.saveUser(user);
+        created.add(user.getId());
+        return user;
+    }
+
+    private String etag(User user) throws Exception {
+        return mvc.perform(get("/api/users/{id}", user.getId()).with(ADMIN))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    @Test
+    void matchingIfNoneMatchIsNotModified() throws Exception {
+        User user = create("etag");
+        String etag = etag(user);
+
+        mvc.perform(get("/api/users/{id}", user.getId()).with(ADMIN).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void staleIfMatchIsPreconditionFailed() throws Exception {
+        User user = create("stale");
+        String etag = etag(user);
+
+        mvc.perform(patch("/api/users/{id}", user.getId()).with(ADMIN)
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"name\": \"First\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, containsString("\"")));
+
+        mvc.perform(patch("/api/users/{id}", user.getId()).with(ADMIN)
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"name\": \"Second\"}"))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void patchWithoutPreconditionIsRejected() throws Exception {
+        User user = create("unconditional");
+
+        mvc.perform(patch("/api/users/{id}", user.getId()).with(ADMIN)
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"name\": \"Blind\"}"))
+                .andExpect(status().isPreconditionRequired());
+        mvc.perform(get("/api/users/{id}", user.getId()).with(ADMIN))
+                .andExpect(jsonPath("$.name").value("Api User"));
+    }
+
+    @Test
+    void duplicateEmailIsConflict() throws Exception {
+        User taken = create("taken");
+
+        mvc.perform(post("/api/users").with(ADMIN)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Copy\", \"age\": 30, \"email\": \"" + taken.getEmail().toUpperCase()
+                                + "\", \"password\": \"secret\"}"))
+                .andExpect(status().isConflict());
+
+        User other = create("other");
+        mvc.perform(patch("/api/users/{id}", other.getId()).with(ADMIN)
+                        .header(HttpHeaders.IF_MATCH, etag(other))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\": \"" + taken.getEmail() + "\"}"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void createWithoutNameIsBadRequest() throws Exception {
+        String email = "nameless-" + UUID.randomUUID() + "@example.com";
+
+        mvc.perform(post("/api/users").with(ADMIN)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"age\": 30, \"email\": \"" + email + "\", \"password\": \"secret\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Name is required"));
+        assertFalse(userService.findByEmail(email).isPresent());
+    }
+
+    @Test
+    void missingCredentialsAreUnauthorized() throws Exception {
+        mvc.perform(get("/api/users"))
+                .andExpect(status().isUnauthorized());
+    }
+}
@@ -0,0 +1,157 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoginAttemptLimiterTest {
+
+    private static final long WINDOW = 10_000;
+    private static final long START = 1_000 * WINDOW;
+
+    private final AtomicLong now = new AtomicLong(START);
+
+    private LoginAttemptLimiter create(int maxPerEmail, int maxPerAddress, int maxEntries) {
+        return new LoginAttemptLimiter(true, Duration.ofMillis(WINDOW), maxPerEmail, maxPerAddress,
+                maxEntries, now::get);
+    }
+
+    private static int acquireAll(LoginAttemptLimiter limiter, String email, String address) {
+        int acquired = 0;
+        while (limiter.tryAcquire(email, address)) {
+            acquired++;
+        }
+        return acquired;
+    }
+
+    @Test
+    void attemptsAreCountedWhenAcquiredAndRejectedOnesAreNot() {
+        LoginAttemptLimiter limiter = create(3, 100, 100);
+
+        assertEquals(3, acquireAll(limiter, "Alice@Example.com", "10.0.0.1"));
+        assertFalse(limiter.tryAcquire("alice@example.com", "10.0.0.2"));
+        // one rejection ended acquireAll, one was the extra attempt
+        assertEquals(2, limiter.getRejectedByEmail());
+        // the address slot taken before the email was rejected is handed back
+        assertEquals(97, acquireAll(limiter, null, "10.0.0.1"));
+    }
+
+    @Test
+    void previousWindowIsWeightedByItsOverlap() {
+        LoginAttemptLimiter limiter = create(5, 100, 100);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.tryAcquire("alice@example.com", null));
+        }
+
+        // half way through the next window the four earlier attempts still count as two
+        now.set(START + WINDOW + WINDOW / 2);
+        assertEquals(3, acquireAll(limiter, "alice@example.com", null));
+    }
+
+    @Test
+    void windowsRollOver() {
+        LoginAttemptLimiter limiter = create(5, 100, 100);
+        assertEquals(5, acquireAll(limiter, "alice@example.com", null));
+
+        // the previous window is carried at full weight at the very start of the next one
+        now.set(START + WINDOW);
+        assertFalse(limiter.tryAcquire("alice@example.com", null));
+
+        // two windows later nothing is carried
+        now.set(START + 2 * WINDOW);
+        assertEquals(5, acquireAll(limiter, "alice@example.com", null));
+    }
+
+    @Test
+    void successResetsTheEmailAndReturnsTheAddressSlot() {
+        LoginAttemptLimiter limiter = create(3, 3, 100);
+        assertTrue(limiter.tryAcquire("alice@example.com", "10.0.0.1"));
+        assertTrue(limiter.tryAcquire("alice@example.com", "10.0.0.1"));
+        assertTrue(limiter.tryAcquire("alice@example.com", "10.0.0.1"));
+        assertFalse(limiter.tryAcquire("alice@example.com", "10.0.0.2"));
+
+        limiter.recordSuccess("ALICE@example.com", "10.0.0.1");
+
+        assertEquals(0, limiter.getTrackedEmails());
+        assertTrue(limiter.tryAcquire("alice@example.com", "10.0.0.2"));
+        // two failures remain on the address, the successful attempt gave its slot back
+        assertTrue(limiter.tryAcquire(null, "10.0.0.1"));
+        assertFalse(limiter.tryAcquire(null, "10.0.0.1"));
+    }
+
+    @Test
+    void releasedAttemptsDoNotCount() {
+        LoginAttemptLimiter limiter = create(2, 100, 100);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire("alice@example.com", "10.0.0.1"));
+            limiter.release("alice@example.com", "10.0.0.1");
+        }
+        assertEquals(2, acquireAll(limiter, "alice@example.com", "10.0.0.1"));
+    }
+
+    @Test
+    void fullMapEvictsIdleKeysFirst() {
+        LoginAttemptLimiter limiter = create(5, 100, 2);
+        assertTrue(limiter.tryAcquire("a@example.com", null));
+        assertTrue(limiter.tryAcquire("b@example.com", null));
+
+        // in the next window a and b are idle and make room
+        now.set(START + WINDOW);
+        assertTrue(limiter.tryAcquire("c@example.com", null));
+        assertEquals(1, limiter.getTrackedEmails());
+        assertEquals(2, limiter.getEvicted());
+    }
+
+    @Test
+    void fullMapKeepsTrackingAndEvictsTheLeastAttemptedKeys() {
+        LoginAttemptLimiter limiter = create(5, 100, 10);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.tryAcquire("target@example.com", null));
+        }
+        // a spray of one-off emails fills the map within the same window
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire("spray" + i + "@example.com", null), "new keys are never refused");
+        }
+
+        assertTrue(limiter.getTrackedEmails() <= 10);
+        assertTrue(limiter.tryAcquire("target@example.com", null));
+        assertFalse(limiter.tryAcquire("target@example.com", null), "the attacked key survived the spray");
+    }
+
+    @Test
+    void concurrentInsertsIntoAFullMapAllGetTracked() throws Exception {
+        LoginAttemptLimiter limiter = create(5, 100, 100);
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                results.add(pool.submit(() -> {
+                    boolean all = true;
+                    for (int i = 0; i < 1000; i++) {
+                        all &= limiter.tryAcquire("t" + thread + "-" + i + "@example.com", null);
+                    }
+                    return all;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertTrue(limiter.getTrackedEmails() <= 100 + threads);
+    }
+}
@@ -0,0 +1,133 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import ru.kata.spring.boot_security.demo.configs.LoginFailureHandler;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class PasswordServiceTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private PasswordService passwordService;
+
+    private PasswordService create(int queueCapacity, Duration waitTimeout) {
+        passwordService = new PasswordService(new SimpleMeterRegistry(), 4, Duration.ZERO,
+                1, queueCapacity, 1, waitTimeout, "bcrypt", 1000, 256, 1024, 1, 1, false);
+        return passwordService;
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (passwordService != null) {
+            passwordService.shutdown();
+        }
+    }
+
+    // occupies the single hashing thread until the test releases it
+    private CompletableFuture<Boolean> blockPool() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Boolean> blocker = passwordService.submit(() -> {
+            started.countDown();
+            try {
+                return release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return blocker;
+    }
+
+    @Test
+    void encodesAndMatchesThroughPool() {
+        PasswordService service = create(4, Duration.ofSeconds(10));
+        String encoded = service.encodePassword(" secret ");
+
+        assertTrue(encoded.startsWith("{bcrypt}"));
+        assertTrue(service.matches("secret", encoded));
+        assertFalse(service.matches("other", encoded));
+    }
+
+    @Test
+    void fullQueueIsRejectedImmediately() throws Exception {
+        PasswordService service = create(1, Duration.ofSeconds(10));
+        blockPool();
+        service.encodePasswordAsync("queued");
+
+        long start = System.nanoTime();
+        assertThrows(PasswordHashingBusyException.class, () -> service.encodePasswordAsync("rejected"));
+        assertThrows(PasswordHashingBusyException.class, () -> service.encodePassword("rejected"));
+        assertThrows(PasswordHashingBusyException.class,
+                () -> service.getPasswordEncoder().matches("rejected", "{bcrypt}x"));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5), "rejection must not wait");
+    }
+
+    @Test
+    void waitTimeoutFailsAndPoolRecovers() throws Exception {
+        PasswordService service = create(4, Duration.ofMillis(100));
+        blockPool();
+
+        long start = System.nanoTime();
+        assertThrows(PasswordHashingBusyException.class, () -> service.encodePassword("secret"));
+        long waited = System.nanoTime() - start;
+        assertTrue(waited >= TimeUnit.MILLISECONDS.toNanos(100), "gave up after " + waited + "ns");
+
+        release.countDown();
+        String encoded = service.encodePasswordAsync("secret").get(10, TimeUnit.SECONDS);
+        assertTrue(service.matches("secret", encoded));
+    }
+
+    @Test
+    void bulkHashingRunsBesideASaturatedLoginPool() throws Exception {
+        PasswordService service = create(1, Duration.ofSeconds(10));
+        blockPool();
+        service.encodePasswordAsync("queued");
+
+        List<String> hashes = service.encodeAll(List.of(" one ", "two", "three"));
+
+        // in input order, trimmed; checked directly since the login pool is still busy
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder();
+        assertEquals(3, hashes.size());
+        assertTrue(bcrypt.matches("one", hashes.get(0).substring("{bcrypt}".length())));
+        assertTrue(bcrypt.matches("three", hashes.get(2).substring("{bcrypt}".length())));
+        assertThrows(PasswordHashingBusyException.class, () -> service.encodePasswordAsync("rejected"),
+                "bulk work did not free or take login capacity");
+    }
+
+    @Test
+    void busyLoginIsAnswered503WithoutCountingAFailure() throws Exception {
+        LoginAttemptLimiter limiter = mock(LoginAttemptLimiter.class);
+        LoginFailureHandler handler = new LoginFailureHandler(limiter);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/login");
+        request.setParameter("email", "alice@example.com");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        handler.onAuthenticationFailure(request, response, new PasswordHashingBusyException("busy"));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), response.getStatus());
+        assertEquals("1", response.getHeader("Retry-After"));
+        verify(limiter, never()).recordFailure(any(), any());
+        verify(limiter).release("alice@example.com", request.getRemoteAddr());
+    }
+}
@@ -0,0 +1,111 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenServiceTest {
+
+    private static final String OLD_KEY = "k1:0123456789abcdef0123456789abcdef";
+    private static final String NEW_KEY = "k2:fedcba9876543210fedcba9876543210";
+
+    private static TokenService service(String keys, String active, Duration ttl) {
+        return new TokenService(true, keys, active, ttl, "AUTH_TOKEN", false);
+    }
+
+    private static String issue(TokenService service) {
+        return service.issue(42L, 3, "alice@example.com", List.of("ROLE_ADMIN", "ROLE_USER"));
+    }
+
+    @Test
+    void issuedTokenVerifies() {
+        TokenService service = service(OLD_KEY, "k1", Duration.ofHours(1));
+
+        TokenPrincipal principal = service.verify(issue(service)).orElseThrow();
+
+        assertEquals(42L, principal.getId());
+        assertEquals(3, principal.getTokenEpoch());
+        assertEquals("alice@example.com", principal.getName());
+        assertEquals(List.of("ROLE_ADMIN", "ROLE_USER"), principal.getAuthorities());
+        assertTrue(issue(service).startsWith("k1."));
+    }
+
+    @Test
+    void tamperedSignatureIsRejected() {
+        TokenService service = service(OLD_KEY, "k1", Duration.ofHours(1));
+        String token = issue(service);
+        char last = token.charAt(token.length() - 1);
+        String tampered = token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A');
+
+        assertEquals(Optional.empty(), service.verify(tampered));
+    }
+
+    @Test
+    void tamperedPayloadIsRejected() {
+        TokenService service = service(OLD_KEY, "k1", Duration.ofHours(1));
+        String[] parts = issue(service).split("\\.");
+        String payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8)
+                .replace("ROLE_USER", "ROLE_ROOT");
+        String forged = parts[0] + "."
+                + Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8))
+                + "." + parts[2];
+
+        assertEquals(Optional.empty(), service.verify(forged));
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        TokenService service = service(OLD_KEY, "k1", Duration.ofSeconds(-1));
+
+        assertEquals(Optional.empty(), service.verify(issue(service)));
+    }
+
+    @Test
+    void unknownKeyIdIsRejected() {
+        TokenService signer = service(OLD_KEY, "k1", Duration.ofHours(1));
+        TokenService verifier = service(NEW_KEY, "k2", Duration.ofHours(1));
+
+        assertEquals(Optional.empty(), verifier.verify(issue(signer)));
+    }
+
+    @Test
+    void malformedTokensAreRejected() {
+        TokenService service = service(OLD_KEY, "k1", Duration.ofHours(1));
+
+        assertEquals(Optional.empty(), service.verify(null));
+        assertEquals(Optional.empty(), service.verify("garbage"));
+        assertEquals(Optional.empty(), service.verify("k1.%%%.%%%"));
+    }
+
+    @Test
+    void keysRotateWithoutInvalidatingIssuedTokens() {
+        TokenService before = service(OLD_KEY, "k1", Duration.ofHours(1));
+        String oldToken = issue(before);
+
+        // step 1: add the new key and sign with it, the old key still verifies
+        TokenService during = service(OLD_KEY + "," + NEW_KEY, "k2", Duration.ofHours(1));
+        String newToken = issue(during);
+        assertTrue(newToken.startsWith("k2."));
+        assertTrue(during.verify(oldToken).isPresent());
+        assertTrue(during.verify(newToken).isPresent());
+
+        // step 2: once old tokens have expired, the old key is dropped
+        TokenService after = service(NEW_KEY, "k2", Duration.ofHours(1));
+        assertEquals(Optional.empty(), after.verify(oldToken));
+        assertTrue(after.verify(newToken).isPresent());
+    }
+
+    @Test
+    void activeKeyMustBeConfigured() {
+        assertThrows(IllegalArgumentException.class, () -> service(OLD_KEY, "k2", Duration.ofHours(1)));
+        assertThrows(IllegalArgumentException.class, () -> service("k1:short", "k1", Duration.ofHours(1)));
+    }
+}
@@ -0,0 +1,90 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.junit.jupiter.api.Test;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserDetailsCacheTest {
+
+    private static User user(long id, String email) {
+        User user = new User("name", 30, email, "{noop}secret");
+        user.setId(id);
+        return user;
+    }
+
+    @Test
+    void lookupIsCaseInsensitive() {
+        UserDetailsCache cache = new UserDetailsCache(100, Duration.ofMinutes(5));
+        User user = user(1, "alice@example.com");
+        cache.put(user);
+
+        assertSame(user, cache.get(" Alice@Example.com"));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void evictByIdUsesIndex() {
+        UserDetailsCache cache = new UserDetailsCache(100, Duration.ofMinutes(5));
+        cache.put(user(1, "alice@example.com"));
+        cache.put(user(2, "bob@example.com"));
+
+        cache.evictById(1L);
+
+        assertNull(cache.get("alice@example.com"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void recachingUnderNewEmailDropsOldEntry() {
+        UserDetailsCache cache = new UserDetailsCache(100, Duration.ofMinutes(5));
+        cache.put(user(1, "old@example.com"));
+        cache.put(user(1, "new@example.com"));
+
+        assertNull(cache.get("old@example.com"));
+        cache.evictById(1L);
+        assertNull(cache.get("new@example.com"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void sizeIsBoundedAcrossStripes() {
+        UserDetailsCache cache = new UserDetailsCache(32, Duration.ofMinutes(5));
+        for (long id = 1; id <= 1000; id++) {
+            cache.put(user(id, "user" + id + "@example.com"));
+        }
+
+        assertTrue(cache.size() <= 32);
+        assertEquals(1000 - cache.size(), cache.getEvictions());
+    }
+
+    @Test
+    void expiredEntriesAreMisses() {
+        UserDetailsCache cache = new UserDetailsCache(100, Duration.ofNanos(1));
+        cache.put(user(1, "alice@example.com"));
+
+        assertNull(cache.get("alice@example.com"));
+        assertEquals(1, cache.getMisses());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void loadsThatRaceAnEvictionAreNotCached() {
+        UserDetailsCache cache = new UserDetailsCache(100, Duration.ofMinutes(5));
+        long generation = cache.generation();
+        // the row is read, then an update commits and evicts, then the stale row arrives
+        cache.evictById(1L);
+        cache.put(user(1, "alice@example.com"), generation);
+
+        assertNull(cache.get("alice@example.com"));
+        assertEquals(0, cache.size());
+
+        cache.put(user(1, "alice@example.com"), cache.generation());
+        assertEquals(1, cache.size());
+    }
+}
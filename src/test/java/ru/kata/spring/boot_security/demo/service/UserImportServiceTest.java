@@ -0,0 +1,82 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.kata.spring.boot_security.demo.dto.ImportReport;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@SpringBootTest(properties = "app.session.store=memory")
+class UserImportServiceTest {
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserService userService;
+
+    private final List<String> emails = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (String email : emails) {
+            userService.findByEmail(email).map(User::getId).ifPresent(userService::deleteUser);
+        }
+    }
+
+    private String email(String prefix) {
+        String email = prefix + "-" + UUID.randomUUID() + "@example.com";
+        emails.add(email);
+        return email;
+    }
+
+    private ImportReport importJson(String json) throws Exception {
+        return userImportService.importJson(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void nullRolesAndNullRowsAreRowErrors() throws Exception {
+        String ok = email("null-roles");
+        ImportReport report = importJson("["
+                + "{\"name\": \"A\", \"age\": 20, \"email\": \"" + ok + "\", \"password\": \"secret\", \"roles\": null},"
+                + "{\"name\": \"B\", \"age\": 20, \"email\": \"" + email("null-role") + "\", \"password\": \"secret\","
+                + " \"roles\": [\"ROLE_USER\", null]},"
+                + "null"
+                + "]");
+
+        assertEquals(3, report.getTotal());
+        assertEquals(1, report.getImported());
+        assertEquals(2, report.getFailed());
+        assertEquals(2, report.getErrors().get(0).getLine());
+        assertEquals("Role name must not be empty", report.getErrors().get(0).getMessage());
+        assertEquals(3, report.getErrors().get(1).getLine());
+        assertEquals(List.of("ROLE_USER"), userService.getUserSummary(
+                userService.findByEmail(ok).orElseThrow().getId()).orElseThrow().getRoles());
+    }
+
+    @Test
+    void failedChunkIsRetriedRowByRow() throws Exception {
+        String tooLong = "x".repeat(300);
+        ImportReport report = importJson("["
+                + "{\"name\": \"A\", \"age\": 20, \"email\": \"" + email("first") + "\", \"password\": \"secret\"},"
+                + "{\"name\": \"" + tooLong + "\", \"age\": 20, \"email\": \"" + email("long") + "\", \"password\": \"secret\"},"
+                + "{\"name\": \"C\", \"age\": 20, \"email\": \"" + email("third") + "\", \"password\": \"secret\"}"
+                + "]");
+
+        assertEquals(2, report.getImported());
+        assertEquals(1, report.getFailed());
+        assertEquals(2, report.getErrors().get(0).getLine());
+        assertEquals(emails.get(1), report.getErrors().get(0).getEmail());
+        assertFalse(userImportService.isRunning());
+    }
+}
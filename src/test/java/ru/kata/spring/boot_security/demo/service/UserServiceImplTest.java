@@ -0,0 +1,220 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.security.core.context.SecurityContextHolder;
+import ru.kata.spring.boot_security.demo.configs.TokenAuthenticationFilter;
+import ru.kata.spring.boot_security.demo.dao.UserDao;
+import ru.kata.spring.boot_security.demo.dto.StoredPassword;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+import javax.servlet.http.Cookie;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "app.session.store=memory")
+class UserServiceImplTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Long> created = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        created.forEach(userService::deleteUser);
+    }
+
+    private User create(String prefix, String... roles) {
+        User user = new User("Test User", 30, prefix + "-" + UUID.randomUUID() + "@example.com", "secret");
+        Set<Role> assigned = new HashSet<>();
+        for (String role : roles.length == 0 ? new String[]{"ROLE_USER"} : roles) {
+            assigned.add(roleService.getRoleByName(role));
+        }
+        user.setRoles(assigned);
+        userService.saveUser(user);
+        created.add(user.getId());
+        return user;
+    }
+
+    @Test
+    void passwordUpgradeBumpsVersionAndEvictsOnlyThatUser() {
+        User user = create("upgrade");
+        User other = create("other");
+        User loaded = userService.getUserById(user.getId()).orElseThrow();
+        userService.getUserById(other.getId()).orElseThrow();
+        Cache cache = entityManagerFactory.getCache();
+        assertTrue(cache.contains(User.class, user.getId()));
+        assertTrue(cache.contains(User.class, other.getId()));
+
+        assertTrue(userService.upgradePassword(user.getId(), loaded.getPassword(), "{bcrypt}upgraded"));
+
+        assertFalse(cache.contains(User.class, user.getId()));
+        assertTrue(cache.contains(User.class, other.getId()), "other users stay cached");
+        User reloaded = userService.getUserById(user.getId()).orElseThrow();
+        assertEquals("{bcrypt}upgraded", reloaded.getPassword());
+        assertEquals(loaded.getVersion() + 1, reloaded.getVersion());
+
+        // the expected hash no longer matches, nothing is replaced
+        assertFalse(userService.upgradePassword(user.getId(), loaded.getPassword(), "{bcrypt}again"));
+
+        // an edit made against the version read before the upgrade is a conflict
+        User edit = new User("Changed", 30, null, null);
+        edit.setId(user.getId());
+        edit.setVersion(loaded.getVersion());
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> userService.updateUser(edit));
+    }
+
+    @Test
+    void staleVersionEditIsRejected() {
+        User user = create("stale");
+        Long version = userService.getUserById(user.getId()).orElseThrow().getVersion();
+
+        User first = new User("First Editor", 31, null, null);
+        first.setId(user.getId());
+        first.setVersion(version);
+        userService.updateUser(first);
+
+        User second = new User("Second Editor", 32, null, null);
+        second.setId(user.getId());
+        second.setVersion(version);
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> userService.updateUser(second));
+
+        User stored = userService.getUserById(user.getId()).orElseThrow();
+        assertEquals("First Editor", stored.getName());
+        assertEquals(version + 1, stored.getVersion());
+    }
+
+    @Test
+    void roleSetIsUpdatedInPlace() {
+        User user = create("roles", "ROLE_USER");
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long recreates = statistics.getCollectionRecreateCount();
+        long removes = statistics.getCollectionRemoveCount();
+
+        User edit = new User("Test User", 30, null, null);
+        edit.setId(user.getId());
+        edit.setRoles(Set.of(roleService.getRoleByName("ROLE_USER"), roleService.getRoleByName("ROLE_ADMIN")));
+        userService.updateUser(edit);
+
+        User demote = new User("Test User", 30, null, null);
+        demote.setId(user.getId());
+        demote.setRoles(Set.of(roleService.getRoleByName("ROLE_ADMIN")));
+        userService.updateUser(demote);
+
+        assertEquals(List.of("ROLE_ADMIN"), userService.getUserSummary(user.getId()).orElseThrow().getRoles());
+        // a replaced collection is deleted and re-inserted as a whole, a diffed one is not
+        assertEquals(recreates, statistics.getCollectionRecreateCount());
+        assertEquals(removes, statistics.getCollectionRemoveCount());
+    }
+
+    @Test
+    void changingEmailToATakenOneIsADuplicate() {
+        User taken = create("taken");
+        User user = create("mover");
+
+        User edit = new User("Test User", 30, taken.getEmail().toUpperCase(), null);
+        edit.setId(user.getId());
+        assertThrows(DuplicateEmailException.class, () -> userService.updateUser(edit));
+        assertEquals(user.getEmail(), userService.getUserById(user.getId()).orElseThrow().getEmail());
+    }
+
+    @Test
+    void securityRelevantChangesRevokeTokens() {
+        User user = create("epoch", "ROLE_USER");
+        long epoch = userService.getTokenEpoch(user.getId()).orElseThrow();
+
+        User rename = new User("Renamed", 30, null, null);
+        rename.setId(user.getId());
+        userService.updateUser(rename);
+        assertEquals(epoch, userService.getTokenEpoch(user.getId()).orElseThrow(), "a rename keeps tokens");
+
+        User promote = new User("Renamed", 30, null, null);
+        promote.setId(user.getId());
+        promote.setRoles(Set.of(roleService.getRoleByName("ROLE_ADMIN")));
+        userService.updateUser(promote);
+        assertEquals(epoch + 1, userService.getTokenEpoch(user.getId()).orElseThrow());
+
+        // the rehash on login changes the stored hash but not the credentials, tokens stay valid
+        String hash = userService.getUserById(user.getId()).orElseThrow().getPassword();
+        assertTrue(userService.upgradePassword(user.getId(), hash, "{bcrypt}upgraded"));
+        assertEquals(epoch + 1, userService.getTokenEpoch(user.getId()).orElseThrow());
+
+        userService.revokeTokens(user.getId());
+        assertEquals(epoch + 2, userService.getTokenEpoch(user.getId()).orElseThrow());
+    }
+
+    @Test
+    void passwordScanLeavesTheUserRegionAlone() {
+        User user = create("scan");
+        Cache cache = entityManagerFactory.getCache();
+        cache.evict(User.class, user.getId());
+
+        List<StoredPassword> batch = userDao.findPasswordsAfterId(user.getId() - 1, 1);
+
+        assertEquals(user.getId(), batch.get(0).getId());
+        assertEquals(user.getPassword(), batch.get(0).getPassword());
+        assertFalse(cache.contains(User.class, user.getId()));
+    }
+
+    @Test
+    void revocationOnAnotherNodeRejectsTokensDespiteTheCachedUser() throws Exception {
+        User user = create("revoked-elsewhere");
+        TokenService tokenService = new TokenService(true, "k1:0123456789abcdef0123456789abcdef", "k1",
+                Duration.ofHours(1), "AUTH_TOKEN", false);
+        TokenAuthenticationFilter filter = new TokenAuthenticationFilter(tokenService, userService);
+        long epoch = userService.getUserById(user.getId()).orElseThrow().getTokenEpoch();
+        String token = tokenService.issue(user.getId(), epoch, user.getEmail(), List.of("ROLE_USER"));
+        assertNotNull(authenticate(filter, token));
+
+        // another node revokes: the row changes, this node's second-level cache does not hear of it
+        jdbcTemplate.update("UPDATE users SET token_epoch = token_epoch + 1 WHERE id = ?", user.getId());
+        assertTrue(entityManagerFactory.getCache().contains(User.class, user.getId()));
+
+        SecurityContextHolder.clearContext();
+        assertNull(authenticate(filter, token));
+    }
+
+    private static Object authenticate(TokenAuthenticationFilter filter, String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/user");
+        request.setCookies(new Cookie("AUTH_TOKEN", token));
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+}